@@ -10,6 +10,7 @@ public abstract class Agent
     // will have access to the variable.
     protected Connect4Game myGame;
     protected boolean iAmRed;
+    protected Connect4Clock myClock = new Connect4Clock();  // the game's time control; no limits until one is set
     
     /**
      * Constructs a new agent.
@@ -34,6 +35,59 @@ public abstract class Agent
      * You MUST override this method in your agent.
      */
     public abstract void move();
+    /**
+     * Tells the agent that its game is over, however it ended, so it can stop any work it does
+     * between moves. The agent may be asked to play another game afterwards.
+     * 
+     * You MAY override this method in your agent.
+     */
+    public void gameOver()
+    {
+    }
+    /**
+     * Lets the agent release what it holds on to between moves, such as threads of its own.
+     * It is called once the agent will not be asked to move again, instead of gameOver().
+     * 
+     * You MAY override this method in your agent.
+     */
+    public void close()
+    {
+    }
+    /**
+     * Tells the agent the clock of the game it is playing.
+     * 
+     * Your agent will not need to use this method.
+     * 
+     * @param clock the clock of the game.
+     */
+    public void setClock(Connect4Clock clock)
+    {
+        this.myClock = clock;
+    }
+    /**
+     * Returns how much longer the agent may think about its current move. A move that takes
+     * longer loses the game.
+     * 
+     * Your agent MAY want to use this method.
+     * 
+     * @return the time left for this move in milliseconds, or Connect4Clock.UNLIMITED.
+     */
+    public long getRemainingMoveMillis()
+    {
+        return myClock.getRemainingMoveMillis(iAmRed);
+    }
+    /**
+     * Returns how much of its time for the whole game the agent has left, not counting the
+     * current move.
+     * 
+     * Your agent MAY want to use this method.
+     * 
+     * @return the game time left in milliseconds, or Connect4Clock.UNLIMITED.
+     */
+    public long getRemainingGameMillis()
+    {
+        return myClock.getRemainingGameMillis(iAmRed);
+    }
     /**
      * A name for the agent.
      * 
@@ -0,0 +1,14 @@
+/**
+ * Creates agents, so a match can give every game a fresh pair of players.
+ */
+public interface Connect4AgentFactory
+{
+    /**
+     * Creates an agent for a game.
+     * 
+     * @param game the game the agent will play.
+     * @param iAmRed true if the agent plays red, false if it plays yellow.
+     * @return the new agent.
+     */
+    Agent createAgent(Connect4Game game, boolean iAmRed);
+}
@@ -0,0 +1,338 @@
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures how fast the core board and agent operations are, so their speed can be compared
+ * before and after a change:
+ *     java Connect4Benchmark [filter] [warmup-iterations] [iterations] [iteration-millis]
+ * 
+ * Each operation is run over a fixed corpus of positions, for five sizes of board and three
+ * stages of the game: the opening, with about a sixth of the slots filled; the middlegame, with
+ * about half; and the endgame, with about four fifths. The sizes go from 5x4 up to 30x20, which
+ * takes ten bitboard words, and the number of slots is printed with each result, so the results
+ * show how each operation scales with the area of the board. The positions come from random games
+ * with fixed seeds, so every run measures the same positions. No move of those games wins; a game
+ * where every move would win is played again.
+ * 
+ * Every measurement runs the operation over the positions for a set time, first for a few
+ * warmup iterations, so the JIT compiler has done its work, and then for the measured ones. The
+ * results are the throughput in operations a second, with the spread between iterations; the
+ * average time of an operation; and the bytes allocated per operation, as counted by the JVM for
+ * the measuring thread. The filter, if given, only runs the operations whose name contains it.
+ */
+public class Connect4Benchmark
+{
+    private static final int[][] BOARD_SIZES = {{5, 4}, {7, 6}, {8, 7}, {15, 13}, {30, 20}};
+    private static final String[] STAGES = {"opening", "middlegame", "endgame"};
+    private static final double[] STAGE_FILL = {0.17, 0.5, 0.8};
+    private static final int POSITIONS = 32;
+
+    /**
+     * One operation to measure.
+     */
+    private abstract static class Operation
+    {
+        final String name;
+
+        Operation(String name)
+        {
+            this.name = name;
+        }
+
+        /**
+         * Runs the operation once on a position of the corpus, and returns something that depends
+         * on the result, so the JIT compiler cannot leave the work out.
+         */
+        abstract long run(Position position);
+    }
+
+    /**
+     * A position of the corpus, with what the operations need already made.
+     */
+    private static class Position
+    {
+        final Connect4Game game;
+        final Connect4Game afterMove;   // the position after one more valid move
+        final long[] filledBefore;      // the bitboards of game, to validate afterMove with
+        final long[] redBefore;
+        final MyAgent agent;            // an agent for the size of board, to be pointed at game
+
+        Position(Connect4Game game, MyAgent agent, Random random)
+        {
+            this.game = game;
+            this.agent = agent;
+            this.filledBefore = game.getFilledWords();
+            this.redBefore = game.getRedWords();
+            this.afterMove = new Connect4Game(game);
+            int column;
+            do
+            {
+                column = random.nextInt(game.getColumnCount());
+            }
+            while (!game.canPlay(column));
+            afterMove.play(column);
+        }
+    }
+
+    private static long sink;   // keeps the results of operations alive
+
+    /**
+     * Runs the benchmarks and prints the results.
+     * 
+     * @param args optionally a filter on the operation names, the number of warmup iterations,
+     *        the number of measured iterations and the length of an iteration in milliseconds.
+     */
+    public static void main(String[] args)
+    {
+        String filter = args.length > 0 ? args[0] : "";
+        int warmups = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        long iterationMillis = args.length > 3 ? Long.parseLong(args[3]) : 500;
+
+        System.out.println(String.format("%-28s %-5s %5s %-10s %14s %8s %12s %10s", "Operation",
+            "Board", "Slots", "Stage", "ops/s", "error", "ns/op", "B/op"));
+        for (Operation operation : operations())
+        {
+            if (!operation.name.contains(filter))
+            {
+                continue;
+            }
+            for (int[] size : BOARD_SIZES)
+            {
+                MyAgent agent = new MyAgent(new Connect4Game(size[0], size[1]), true, 1);
+                for (int stage = 0; stage < STAGES.length; stage++)
+                {
+                    Position[] positions = corpus(size[0], size[1], stage, agent);
+                    for (int i = 0; i < warmups; i++)
+                    {
+                        measure(operation, positions, iterationMillis);
+                    }
+                    double[] throughput = new double[iterations];
+                    double allocated = 0;
+                    for (int i = 0; i < iterations; i++)
+                    {
+                        double[] result = measure(operation, positions, iterationMillis);
+                        throughput[i] = result[0];
+                        allocated = result[1] < 0 || allocated < 0 ? -1
+                            : allocated + result[1] / iterations;
+                    }
+                    report(operation.name, size, STAGES[stage], throughput, allocated);
+                }
+                agent.close();
+            }
+        }
+        if (sink == 42)
+        {
+            System.out.println();
+        }
+    }
+
+    /**
+     * Returns the operations to measure.
+     */
+    private static List<Operation> operations()
+    {
+        final Connect4Evaluator evaluator = new Connect4Evaluator();
+        final Connect4Search search = new Connect4Search(null);
+        search.setSolverThreshold(-1);
+        List<Operation> operations = new ArrayList<Operation>();
+        operations.add(new Operation("gameWon")
+        {
+            long run(Position position)
+            {
+                return position.game.gameWon();
+            }
+        });
+        operations.add(new Operation("getBoardMatrix")
+        {
+            long run(Position position)
+            {
+                return position.game.getBoardMatrix()[0][0];
+            }
+        });
+        operations.add(new Operation("boardFull")
+        {
+            long run(Position position)
+            {
+                return position.game.boardFull() ? 1 : 0;
+            }
+        });
+        operations.add(new Operation("validate")
+        {
+            long run(Position position)
+            {
+                return position.game.validate(position.afterMove).length();
+            }
+        });
+        operations.add(new Operation("validateMove")
+        {
+            long run(Position position)
+            {
+                return position.afterMove.validateMove(position.filledBefore,
+                    position.redBefore).length();
+            }
+        });
+        operations.add(new Operation("play and undo")
+        {
+            long run(Position position)
+            {
+                Connect4Game game = position.game;
+                long hashes = 0;
+                for (int i = 0; i < game.getColumnCount(); i++)
+                {
+                    if (game.canPlay(i))
+                    {
+                        game.play(i);
+                        hashes += game.getHash();
+                        game.undo();
+                    }
+                }
+                return hashes;
+            }
+        });
+        operations.add(new Operation("copy constructor")
+        {
+            long run(Position position)
+            {
+                return new Connect4Game(position.game).getMoveCount();
+            }
+        });
+        operations.add(new Operation("MyAgent.iCanWin")
+        {
+            long run(Position position)
+            {
+                position.agent.myGame = position.game;
+                return position.agent.iCanWin();
+            }
+        });
+        operations.add(new Operation("Connect4Evaluator.evaluate")
+        {
+            long run(Position position)
+            {
+                return evaluator.evaluate(position.game);
+            }
+        });
+        operations.add(new Operation("search depth 6")
+        {
+            long run(Position position)
+            {
+                return search.search(new Connect4Game(position.game), 6);
+            }
+        });
+        return operations;
+    }
+
+    /**
+     * Runs an operation over the positions, round and round, for a set time.
+     * 
+     * @return the operations a second, and the bytes allocated per operation, or -1 if the JVM
+     *         does not count them.
+     */
+    private static double[] measure(Operation operation, Position[] positions, long millis)
+    {
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        long end = start + millis * 1000000L;
+        long count = 0;
+        long result = 0;
+        long now;
+        do
+        {
+            for (Position position : positions)
+            {
+                result += operation.run(position);
+            }
+            count += positions.length;
+            now = System.nanoTime();
+        }
+        while (now < end);
+        long allocatedAfter = allocatedBytes();
+        sink += result;
+        double allocated = -1;
+        if (allocatedBefore >= 0 && allocatedAfter >= 0)
+        {
+            allocated = (double) (allocatedAfter - allocatedBefore) / count;
+        }
+        return new double[] {count * 1e9 / (now - start), allocated};
+    }
+
+    /**
+     * Prints the results of one operation on one set of positions.
+     */
+    private static void report(String name, int[] size, String stage, double[] throughput,
+        double allocated)
+    {
+        double mean = 0;
+        for (double value : throughput)
+        {
+            mean += value / throughput.length;
+        }
+        double variance = 0;
+        for (double value : throughput)
+        {
+            variance += (value - mean) * (value - mean) / Math.max(throughput.length - 1, 1);
+        }
+        // the half-width of a 99.9% interval, as JMH reports it, roughly, for a few iterations
+        double error = 3.3 * Math.sqrt(variance / throughput.length);
+        System.out.println(String.format("%-28s %-5s %5d %-10s %14.1f %7.1f%% %12.1f %10s", name,
+            size[0] + "x" + size[1], size[0] * size[1], stage, mean, 100 * error / mean, 1e9 / mean,
+            allocated < 0 ? "n/a" : String.format("%.1f", allocated)));
+    }
+
+    /**
+     * Returns the fixed positions for a board size and stage of the game.
+     */
+    private static Position[] corpus(int columns, int rows, int stage, MyAgent agent)
+    {
+        Random random = new Random(1000L * columns + 100L * rows + stage);
+        int moves = (int) Math.round(STAGE_FILL[stage] * columns * rows);
+        Position[] positions = new Position[POSITIONS];
+        int found = 0;
+        while (found < POSITIONS)
+        {
+            Connect4Game game = new Connect4Game(columns, rows);
+            game.setRedPlayedFirst(random.nextBoolean());
+            while (game.getMoveCount() < moves)
+            {
+                // a random column, or the next one along that can be played without winning
+                int start = random.nextInt(columns);
+                int column = -1;
+                for (int i = 0; i < columns && column < 0; i++)
+                {
+                    int candidate = (start + i) % columns;
+                    if (game.canPlay(candidate) && !game.isWinningMove(candidate))
+                    {
+                        column = candidate;
+                    }
+                }
+                if (column < 0)
+                {
+                    break;
+                }
+                game.play(column);
+            }
+            if (game.getMoveCount() == moves)
+            {
+                positions[found++] = new Position(game, agent, random);
+            }
+        }
+        return positions;
+    }
+
+    /**
+     * Returns the number of bytes the current thread has allocated, or -1 if the JVM does not
+     * count them.
+     */
+    private static long allocatedBytes()
+    {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean)
+        {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(
+                Thread.currentThread().getId());
+        }
+        return -1;
+    }
+}
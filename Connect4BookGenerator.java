@@ -0,0 +1,153 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Writes an opening book for Connect4OpeningBook. This runs offline, not during a game:
+ *     java Connect4BookGenerator book-file [plies] [seconds-per-position] [columns rows]
+ * 
+ * Every position that can come up in the first plies moves of a game is searched, for as long
+ * as it takes to solve it or until its time runs out. The deepest positions are searched first,
+ * so the searches of the earlier positions find them in the transposition table.
+ * 
+ * A position is only searched once for itself, its mirror image and the same position with the
+ * colors swapped, which all have the same score; the book holds all four.
+ */
+public class Connect4BookGenerator
+{
+    private static final int DEFAULT_PLIES = 6;
+    private static final long DEFAULT_SECONDS = 2;
+
+    /**
+     * Generates a book.
+     * 
+     * @param args the book file, then optionally the number of plies, the time to search each
+     *        position in seconds, and the number of columns and rows of the board.
+     * @throws IOException if the book cannot be written.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length < 1)
+        {
+            System.out.println("Usage: java Connect4BookGenerator book-file [plies] "
+                + "[seconds-per-position] [columns rows]");
+            return;
+        }
+        File file = new File(args[0]);
+        int plies = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_PLIES;
+        long seconds = args.length > 2 ? Long.parseLong(args[2]) : DEFAULT_SECONDS;
+        int columns = args.length > 4 ? Integer.parseInt(args[3]) : 7;
+        int rows = args.length > 4 ? Integer.parseInt(args[4]) : 6;
+
+        Connect4Search search = new Connect4LazySmpSearch(new Connect4TranspositionTable(1 << 24),
+            Runtime.getRuntime().availableProcessors());
+        Map<Long, Long> book = generate(search, columns, rows, plies, seconds * 1000);
+        Connect4OpeningBook.write(file, columns, rows, book);
+        System.out.println("Wrote " + book.size() + " positions to " + file + ".");
+    }
+
+    /**
+     * Searches every position of the first moves of a game.
+     * 
+     * @param search the search to use.
+     * @param columns the number of columns of the board.
+     * @param rows the number of rows of the board.
+     * @param plies the number of moves to cover; positions after up to plies - 1 moves are
+     *        searched, so the book has a move for each of the first plies moves.
+     * @param millis the time to search each position, in milliseconds.
+     * @return the book entries, keyed by the hash of their position.
+     */
+    public static Map<Long, Long> generate(Connect4Search search, int columns, int rows, int plies,
+        long millis)
+    {
+        // every position, ply by ply, for red moving first; the rest come from swapping colors
+        List<List<Connect4Game>> levels = new ArrayList<List<Connect4Game>>();
+        Set<Long> seen = new HashSet<Long>();
+        Connect4Game start = new Connect4Game(columns, rows);
+        start.setRedPlayedFirst(true);
+        List<Connect4Game> level = new ArrayList<Connect4Game>();
+        level.add(start);
+        for (int ply = 0; ply < plies && !level.isEmpty(); ply++)
+        {
+            levels.add(level);
+            List<Connect4Game> next = new ArrayList<Connect4Game>();
+            if (ply + 1 < plies)
+            {
+                for (Connect4Game game : level)
+                {
+                    for (int column = 0; column < columns; column++)
+                    {
+                        // a position after a win, or on a full board, needs no move
+                        if (game.canPlay(column) && !game.isWinningMove(column)
+                            && game.getMoveCount() + 1 < columns * rows)
+                        {
+                            Connect4Game child = new Connect4Game(game);
+                            child.play(column);
+                            if (seen.add(child.getHash()))
+                            {
+                                next.add(child);
+                            }
+                        }
+                    }
+                }
+            }
+            level = next;
+        }
+
+        Map<Long, Long> book = new HashMap<Long, Long>();
+        int searched = 0;
+        for (int ply = levels.size() - 1; ply >= 0; ply--)
+        {
+            for (Connect4Game game : levels.get(ply))
+            {
+                if (book.containsKey(game.getHash()))
+                {
+                    continue;   // already stored as the mirror image of another position
+                }
+                int move = search.search(new Connect4Game(game), columns * rows, millis);
+                int score = search.getLastScore();
+                int depth = search.getLastDepth();
+                Connect4Game mirror = transform(game, true, false);
+                int mirrorMove = columns - 1 - move;
+                book.put(game.getHash(), Connect4OpeningBook.entry(move, score, depth));
+                book.put(mirror.getHash(), Connect4OpeningBook.entry(mirrorMove, score, depth));
+                book.put(transform(game, false, true).getHash(),
+                    Connect4OpeningBook.entry(move, score, depth));
+                book.put(transform(game, true, true).getHash(),
+                    Connect4OpeningBook.entry(mirrorMove, score, depth));
+                searched++;
+                if (searched % 100 == 0)
+                {
+                    System.out.println("Searched " + searched + " positions; at ply " + ply + ".");
+                }
+            }
+        }
+        return book;
+    }
+
+    /**
+     * Returns a copy of a position, mirrored left to right, with the colors swapped, or both.
+     */
+    private static Connect4Game transform(Connect4Game game, boolean mirror, boolean swapColors)
+    {
+        int columns = game.getColumnCount();
+        Connect4Game copy = new Connect4Game(columns, game.getRowCount());
+        copy.setRedPlayedFirst(game.getRedPlayedFirst() != swapColors);
+        for (int i = 0; i < columns; i++)
+        {
+            for (int j = 0; j < game.getRowCount(); j++)
+            {
+                if (game.isFilled(i, j))
+                {
+                    copy.addToken(mirror ? columns - 1 - i : i, j, game.isRed(i, j) != swapColors);
+                }
+            }
+        }
+        return copy;
+    }
+}
@@ -0,0 +1,258 @@
+/**
+ * The time control of a game: how long each player may think, in total and per move.
+ * 
+ * A clock can limit each move, each player's whole game, or both:
+ * - fixed time per move: every move may take up to the same time, and time not used is lost;
+ * - a game clock: each player has a budget for the whole game, which every move uses up;
+ * - with an increment, each player gets some time back after each move they finish in time.
+ * A move may take as long as the smaller of the per-move limit and the player's game time left.
+ * A player whose move takes longer has run out of time, and loses the game.
+ * 
+ * The game driver starts and stops the clock around each move; agents can ask it how much time
+ * they have left, from any thread, to plan their search.
+ */
+public class Connect4Clock
+{
+    /**
+     * A limit that is never reached.
+     */
+    public static final long UNLIMITED = Long.MAX_VALUE;
+
+    private final long gameMillis;
+    private final long incrementMillis;
+    private final long moveMillis;
+    private long[] remainingNanos = new long[2];    // game time left, red then yellow
+    private boolean[] timedOut = new boolean[2];
+    private int running = -1;       // the player whose move is being timed, or -1
+    private long moveStart;         // System.nanoTime() at which that move started
+
+    /**
+     * Creates a clock with no limits.
+     */
+    public Connect4Clock()
+    {
+        this(UNLIMITED, 0, UNLIMITED);
+    }
+
+    /**
+     * Creates a clock.
+     * 
+     * @param gameMillis each player's time for the whole game, in milliseconds, or UNLIMITED.
+     * @param incrementMillis the time added to a player's game time after each move made in time.
+     * @param moveMillis the longest a single move may take, in milliseconds, or UNLIMITED.
+     */
+    public Connect4Clock(long gameMillis, long incrementMillis, long moveMillis)
+    {
+        if (gameMillis <= 0 || moveMillis <= 0 || incrementMillis < 0)
+        {
+            throw new IllegalArgumentException("Time limits must be positive.");
+        }
+        this.gameMillis = gameMillis;
+        this.incrementMillis = incrementMillis;
+        this.moveMillis = moveMillis;
+        reset();
+    }
+
+    /**
+     * Creates a clock that gives every move the same time, with no limit on the whole game.
+     * 
+     * @param moveMillis the time for each move, in milliseconds.
+     * @return the clock.
+     */
+    public static Connect4Clock fixedTime(long moveMillis)
+    {
+        return new Connect4Clock(UNLIMITED, 0, moveMillis);
+    }
+
+    /**
+     * Creates a clock that gives each player a time for the whole game, plus an increment after
+     * every move.
+     * 
+     * @param gameMillis each player's time for the whole game, in milliseconds.
+     * @param incrementMillis the time added after each move, in milliseconds.
+     * @return the clock.
+     */
+    public static Connect4Clock withIncrement(long gameMillis, long incrementMillis)
+    {
+        return new Connect4Clock(gameMillis, incrementMillis, UNLIMITED);
+    }
+
+    /**
+     * Creates a clock with the same time control as this one, for another game.
+     * 
+     * @return a new clock, reset.
+     */
+    public Connect4Clock copy()
+    {
+        return new Connect4Clock(gameMillis, incrementMillis, moveMillis);
+    }
+
+    /**
+     * Sets both players' time back to the start of a game.
+     */
+    public synchronized void reset()
+    {
+        for (int i = 0; i < 2; i++)
+        {
+            remainingNanos[i] = gameMillis == UNLIMITED ? UNLIMITED : gameMillis * 1000000L;
+            timedOut[i] = false;
+        }
+        running = -1;
+    }
+
+    /**
+     * Returns the time each player has for the whole game.
+     * 
+     * @return the time in milliseconds, or UNLIMITED.
+     */
+    public long getGameMillis()
+    {
+        return gameMillis;
+    }
+
+    /**
+     * Returns the time added to a player's game time after each move.
+     * 
+     * @return the increment, in milliseconds.
+     */
+    public long getIncrementMillis()
+    {
+        return incrementMillis;
+    }
+
+    /**
+     * Returns the longest a single move may take.
+     * 
+     * @return the time in milliseconds, or UNLIMITED.
+     */
+    public long getMoveMillis()
+    {
+        return moveMillis;
+    }
+
+    /**
+     * Starts timing a player's move.
+     * 
+     * @param red true for the red player.
+     */
+    public synchronized void startMove(boolean red)
+    {
+        running = red ? 0 : 1;
+        moveStart = System.nanoTime();
+    }
+
+    /**
+     * Stops timing the move being made, and charges its time to the player. A move made in time
+     * earns the increment; a move that took too long uses up the player's time, who has then run
+     * out of time.
+     * 
+     * @return true if the move was made in time.
+     */
+    public synchronized boolean stopMove()
+    {
+        if (running < 0)
+        {
+            throw new IllegalStateException("No move is being timed.");
+        }
+        int player = running;
+        long elapsed = System.nanoTime() - moveStart;
+        boolean inTime = elapsed <= allowedNanos(player);
+        if (remainingNanos[player] != UNLIMITED)
+        {
+            remainingNanos[player] = inTime ? remainingNanos[player] - elapsed
+                + incrementMillis * 1000000L : 0;
+        }
+        timedOut[player] |= !inTime;
+        running = -1;
+        return inTime;
+    }
+
+    /**
+     * Returns how long a player's move may take, counting from its start.
+     * 
+     * @param red true for the red player.
+     * @return the time in milliseconds, or UNLIMITED.
+     */
+    public synchronized long getMoveLimitMillis(boolean red)
+    {
+        long allowed = allowedNanos(red ? 0 : 1);
+        return allowed == UNLIMITED ? UNLIMITED : allowed / 1000000L;
+    }
+
+    /**
+     * Returns how much longer a player's current move may take, or how long their next move may
+     * take if they are not moving.
+     * 
+     * @param red true for the red player.
+     * @return the time in milliseconds, or UNLIMITED.
+     */
+    public synchronized long getRemainingMoveMillis(boolean red)
+    {
+        int player = red ? 0 : 1;
+        long allowed = allowedNanos(player);
+        if (allowed == UNLIMITED)
+        {
+            return UNLIMITED;
+        }
+        if (running == player)
+        {
+            allowed -= System.nanoTime() - moveStart;
+        }
+        return Math.max(allowed, 0) / 1000000L;
+    }
+
+    /**
+     * Returns how much of a player's game time is left, not counting the move being made.
+     * 
+     * @param red true for the red player.
+     * @return the time in milliseconds, or UNLIMITED.
+     */
+    public synchronized long getRemainingGameMillis(boolean red)
+    {
+        long remaining = remainingNanos[red ? 0 : 1];
+        return remaining == UNLIMITED ? UNLIMITED : remaining / 1000000L;
+    }
+
+    /**
+     * Checks if a player has run out of time.
+     * 
+     * @param red true for the red player.
+     * @return true if one of the player's moves took too long.
+     */
+    public synchronized boolean hasTimedOut(boolean red)
+    {
+        return timedOut[red ? 0 : 1];
+    }
+
+    /**
+     * Describes the time control.
+     * 
+     * @return the time control, such as "60000 ms + 500 ms per move, at most 5000 ms a move".
+     */
+    public String toString()
+    {
+        if (gameMillis == UNLIMITED && moveMillis == UNLIMITED)
+        {
+            return "no time limit";
+        }
+        String text = "";
+        if (gameMillis != UNLIMITED)
+        {
+            text = gameMillis + " ms" + (incrementMillis > 0 ? " + " + incrementMillis + " ms per move" : "");
+        }
+        if (moveMillis != UNLIMITED)
+        {
+            text += (text.length() > 0 ? ", at most " : "") + moveMillis + " ms a move";
+        }
+        return text;
+    }
+
+    /**
+     * Returns how long a player's move may take, in nanoseconds, or UNLIMITED.
+     */
+    private long allowedNanos(int player)
+    {
+        long move = moveMillis == UNLIMITED ? UNLIMITED : moveMillis * 1000000L;
+        return Math.min(move, remainingNanos[player]);
+    }
+}
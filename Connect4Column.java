@@ -1,10 +1,13 @@
 /**
- * A single column in a Connect 4 game. A column stores a number of individual slots.
+ * A single column in a Connect 4 game. A column is a view of one column of the game board; its
+ * slots read and write the board of the game it belongs to.
  * 
  * You should not modify this class, but you will need to use methods within it.
  */
 public class Connect4Column
 {
+    private Connect4Game game;
+    private int index;
     private Connect4Slot[] slots;
     
     /**
@@ -16,11 +19,7 @@ public class Connect4Column
      */
     public Connect4Column(int height)
     {
-        slots = new Connect4Slot[height];
-        for (int i = 0; i < height; i++)
-        {
-            slots[i] = new Connect4Slot();
-        }
+        this(new Connect4Game(1, height), 0);
     }
     /**
      * Creates a copy of the given Connect4Column.
@@ -31,10 +30,32 @@ public class Connect4Column
      */
     public Connect4Column(Connect4Column column)
     {
-        this.slots = new Connect4Slot[column.getRowCount()];
+        this(column.getRowCount());
         for (int i = 0; i < column.getRowCount(); i++)
         {
-            slots[i] = new Connect4Slot(column.getSlot(i));
+            Connect4Slot slot = column.getSlot(i);
+            if (slot.getIsFilled())
+            {
+                game.addToken(0, i, slot.getIsRed());
+            }
+        }
+    }
+    /**
+     * Creates the view of one column of a game.
+     * 
+     * Your agent will not need to use this method.
+     * 
+     * @param game the game the column belongs to.
+     * @param index the index of the column in the game.
+     */
+    Connect4Column(Connect4Game game, int index)
+    {
+        this.game = game;
+        this.index = index;
+        this.slots = new Connect4Slot[game.getRowCount()];
+        for (int i = 0; i < slots.length; i++)
+        {
+            slots[i] = new Connect4Slot(game, index, i);
         }
     }
     /**
@@ -65,14 +86,31 @@ public class Connect4Column
      */
     public boolean getIsFull()
     {
-        for (Connect4Slot slot : slots)
-        {
-            if (!slot.getIsFilled())
-            {
-                return false;
-            }
-        }
-        return true;
+        return game.isColumnFull(index);
+    }
+    /**
+     * Returns the number of tokens stacked from the bottom of the column. The height is read
+     * straight from the game board, so it always agrees with the slots.
+     * 
+     * Your agent MAY want to use this method.
+     * 
+     * @return the number of filled slots below the lowest empty slot.
+     */
+    public int getHeight()
+    {
+        return game.getHeight(index);
+    }
+    /**
+     * Returns the index of the lowest empty slot in the column, where the next token dropped
+     * into the column will land. Slot 0 is the top of the column.
+     * 
+     * Your agent MAY want to use this method.
+     * 
+     * @return the index of the lowest empty slot; -1 if the column is already full.
+     */
+    public int getNextOpenRow()
+    {
+        return slots.length - 1 - game.getHeight(index);
     }
     /**
      * Returns the number of rows in the column.
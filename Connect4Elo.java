@@ -0,0 +1,139 @@
+/**
+ * Elo arithmetic for match results: ratings from scores, confidence intervals, and the
+ * sequential probability ratio test (SPRT) that tells when a match has been played long enough.
+ * 
+ * A score is the fraction of the points won, a draw counting as half a point. An Elo difference
+ * d means an expected score of 1 / (1 + 10^(-d / 400)).
+ */
+public class Connect4Elo
+{
+    // scores are kept this far from 0 and 1, so a clean sweep still has a finite rating
+    private static final double SCORE_LIMIT = 0.001;
+
+    private Connect4Elo()
+    {
+    }
+
+    /**
+     * Returns the expected score of a player rated a given amount above the opponent.
+     * 
+     * @param elo the Elo difference.
+     * @return the expected score, between 0 and 1.
+     */
+    public static double scoreFromElo(double elo)
+    {
+        return 1.0 / (1.0 + Math.pow(10.0, -elo / 400.0));
+    }
+
+    /**
+     * Returns the Elo difference that a score shows. Scores of 0 and 1 give about -1200 and 1200.
+     * 
+     * @param score the score, between 0 and 1.
+     * @return the Elo difference.
+     */
+    public static double eloFromScore(double score)
+    {
+        score = Math.min(Math.max(score, SCORE_LIMIT), 1.0 - SCORE_LIMIT);
+        return -400.0 * Math.log10(1.0 / score - 1.0);
+    }
+
+    /**
+     * Returns the Elo difference that a match result shows.
+     * 
+     * @param wins the games won.
+     * @param losses the games lost.
+     * @param draws the games drawn.
+     * @return the Elo difference; 0 if no games were played.
+     */
+    public static double elo(int wins, int losses, int draws)
+    {
+        int games = wins + losses + draws;
+        return games == 0 ? 0.0 : eloFromScore((wins + 0.5 * draws) / games);
+    }
+
+    /**
+     * Returns a confidence interval for the Elo difference of a match result.
+     * 
+     * @param wins the games won.
+     * @param losses the games lost.
+     * @param draws the games drawn.
+     * @param z the width of the interval in standard errors: 1.96 for 95%.
+     * @return the low and high ends of the interval.
+     */
+    public static double[] eloInterval(int wins, int losses, int draws, double z)
+    {
+        int games = wins + losses + draws;
+        if (games == 0)
+        {
+            return new double[] {eloFromScore(0.0), eloFromScore(1.0)};
+        }
+        double score = (wins + 0.5 * draws) / games;
+        double error = z * Math.sqrt(variance(wins, losses, draws) / games);
+        return new double[] {eloFromScore(score - error), eloFromScore(score + error)};
+    }
+
+    /**
+     * Returns the log-likelihood ratio of a match result for the hypothesis that the Elo
+     * difference is elo1 against the hypothesis that it is elo0, using the normal approximation
+     * to the distribution of the score.
+     * 
+     * @param wins the games won.
+     * @param losses the games lost.
+     * @param draws the games drawn.
+     * @param elo0 the Elo difference of the null hypothesis.
+     * @param elo1 the Elo difference of the alternative hypothesis.
+     * @return the log-likelihood ratio; positive values favor elo1.
+     */
+    public static double sprtLlr(int wins, int losses, int draws, double elo0, double elo1)
+    {
+        int games = wins + losses + draws;
+        if (games == 0)
+        {
+            return 0.0;
+        }
+        double score = (wins + 0.5 * draws) / games;
+        double score0 = scoreFromElo(elo0);
+        double score1 = scoreFromElo(elo1);
+        return games * (score1 - score0) * (2 * score - score0 - score1)
+            / (2 * variance(wins, losses, draws));
+    }
+
+    /**
+     * Runs the SPRT on a match result.
+     * 
+     * @param wins the games won.
+     * @param losses the games lost.
+     * @param draws the games drawn.
+     * @param elo0 the Elo difference of the null hypothesis.
+     * @param elo1 the Elo difference of the alternative hypothesis.
+     * @param alpha the chance of accepting elo1 when elo0 is true.
+     * @param beta the chance of accepting elo0 when elo1 is true.
+     * @return 1 if elo1 is accepted, -1 if elo0 is accepted, 0 if more games are needed.
+     */
+    public static int sprt(int wins, int losses, int draws, double elo0, double elo1,
+        double alpha, double beta)
+    {
+        double llr = sprtLlr(wins, losses, draws, elo0, elo1);
+        if (llr >= Math.log((1 - beta) / alpha))
+        {
+            return 1;
+        }
+        if (llr <= Math.log(beta / (1 - alpha)))
+        {
+            return -1;
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the variance of the score of a single game. One win and one loss are added to the
+     * counts, so a run of identical results does not look infinitely certain.
+     */
+    private static double variance(int wins, int losses, int draws)
+    {
+        double games = wins + losses + draws + 2;
+        double score = (wins + 1 + 0.5 * draws) / games;
+        return ((wins + 1) * (1 - score) * (1 - score) + (losses + 1) * score * score
+            + draws * (0.5 - score) * (0.5 - score)) / games;
+    }
+}
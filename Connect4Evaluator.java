@@ -0,0 +1,300 @@
+/**
+ * Scores Connect 4 positions that a search will not look past, so it can tell a promising
+ * position from a poor one without searching to the end of the game.
+ * 
+ * The score adds up, for the player to move and minus the same for the opponent:
+ * - every open three: a window with three of the player's tokens and an empty slot;
+ * - every open two: a window with two of the player's tokens and two empty slots;
+ * - every token in the center column, or the two center columns of an even-width board, since
+ *   they lie on the most windows;
+ * - every threat on a row that suits the player: the empty slot of an open three, on an odd row
+ *   counting from the bottom for the player who moved first, or an even row for the other. Late
+ *   in the game, when every other move is forced, those are the threats that end up being won.
+ *   This is the classic rule for boards with an even number of rows.
+ * In a game won by some other number of tokens in a line, a three is a window one token short of
+ * a line and a two is a window two tokens short, so Connect 5 scores open fours and threes.
+ * Each feature has a weight that can be set, so every agent can have an evaluator of its own.
+ * Subclasses can score positions some other way altogether.
+ * 
+ * The evaluator keeps no state while scoring, so one evaluator can serve several searching
+ * threads at once.
+ */
+public class Connect4Evaluator
+{
+    /**
+     * The default score of an open three.
+     */
+    public static final int DEFAULT_THREE_WEIGHT = 16;
+    /**
+     * The default score of an open two.
+     */
+    public static final int DEFAULT_TWO_WEIGHT = 3;
+    /**
+     * The default score of a token in a center column.
+     */
+    public static final int DEFAULT_CENTER_WEIGHT = 4;
+    /**
+     * The default extra score of a threat on a row that suits the player.
+     */
+    public static final int DEFAULT_PARITY_WEIGHT = 24;
+
+    private int threeWeight = DEFAULT_THREE_WEIGHT;
+    private int twoWeight = DEFAULT_TWO_WEIGHT;
+    private int centerWeight = DEFAULT_CENTER_WEIGHT;
+    private int parityWeight = DEFAULT_PARITY_WEIGHT;
+    private Connect4Windows windows;    // the index for the board size last scored
+
+    /**
+     * Sets the score of an open three.
+     * 
+     * @param threeWeight the weight.
+     */
+    public void setThreeWeight(int threeWeight)
+    {
+        this.threeWeight = threeWeight;
+    }
+
+    /**
+     * Sets the score of an open two.
+     * 
+     * @param twoWeight the weight.
+     */
+    public void setTwoWeight(int twoWeight)
+    {
+        this.twoWeight = twoWeight;
+    }
+
+    /**
+     * Sets the score of a token in a center column.
+     * 
+     * @param centerWeight the weight.
+     */
+    public void setCenterWeight(int centerWeight)
+    {
+        this.centerWeight = centerWeight;
+    }
+
+    /**
+     * Sets the extra score of a threat on a row that suits the player.
+     * 
+     * @param parityWeight the weight.
+     */
+    public void setParityWeight(int parityWeight)
+    {
+        this.parityWeight = parityWeight;
+    }
+
+    /**
+     * Returns the score of an open three.
+     * 
+     * @return the weight.
+     */
+    public int getThreeWeight()
+    {
+        return threeWeight;
+    }
+
+    /**
+     * Returns the score of an open two.
+     * 
+     * @return the weight.
+     */
+    public int getTwoWeight()
+    {
+        return twoWeight;
+    }
+
+    /**
+     * Returns the score of a token in a center column.
+     * 
+     * @return the weight.
+     */
+    public int getCenterWeight()
+    {
+        return centerWeight;
+    }
+
+    /**
+     * Returns the extra score of a threat on a row that suits the player.
+     * 
+     * @return the weight.
+     */
+    public int getParityWeight()
+    {
+        return parityWeight;
+    }
+
+    /**
+     * Scores a position from the point of view of the player to move. The score must stay well
+     * inside +/- Connect4Search.WIN_SCORE / 2; with weights in the hundreds it is far inside.
+     * 
+     * @param game the position to score.
+     * @return the score of the position.
+     */
+    public int evaluate(Connect4Game game)
+    {
+        Connect4Windows index = windows;
+        if (index == null || index.getColumnCount() != game.getColumnCount()
+            || index.getRowCount() != game.getRowCount()
+            || index.getWindowLength() != game.getWinLength())
+        {
+            index = Connect4Windows.forGame(game);
+            windows = index;
+        }
+        if (game.getWordCount() > 1)
+        {
+            return evaluateWords(game, index);
+        }
+        long red = game.getRedBits();
+        long yellow = game.getYellowBits();
+        int three = index.getWindowLength() - 1;
+        int two = three - 1;
+
+        // open threes and twos, and the slots that would complete the threes
+        int score = 0;
+        long redThreats = 0L;
+        long yellowThreats = 0L;
+        int count = index.getWindowCount();
+        for (int i = 0; i < count; i++)
+        {
+            long window = index.getSegmentMask(i);  // window i is segment i on a board of one word
+            long redTokens = window & red;
+            long yellowTokens = window & yellow;
+            if (yellowTokens == 0 && redTokens != 0)
+            {
+                int tokens = Long.bitCount(redTokens);
+                if (tokens == three)
+                {
+                    score += threeWeight;
+                    redThreats |= window & ~red;
+                }
+                else if (tokens == two)
+                {
+                    score += twoWeight;
+                }
+            }
+            else if (redTokens == 0 && yellowTokens != 0)
+            {
+                int tokens = Long.bitCount(yellowTokens);
+                if (tokens == three)
+                {
+                    score -= threeWeight;
+                    yellowThreats |= window & ~yellow;
+                }
+                else if (tokens == two)
+                {
+                    score -= twoWeight;
+                }
+            }
+        }
+
+        int columns = game.getColumnCount();
+        long center = index.getColumnMask(columns / 2);
+        if ((columns & 1) == 0)
+        {
+            center |= index.getColumnMask(columns / 2 - 1);
+        }
+        score += centerWeight * (Long.bitCount(red & center) - Long.bitCount(yellow & center));
+
+        // the player who moved first wants threats on odd rows, the other on even rows
+        long redRows = game.getRedPlayedFirst() ? index.getOddRowMask() : ~index.getOddRowMask();
+        score += parityWeight
+            * (Long.bitCount(redThreats & redRows) - Long.bitCount(yellowThreats & ~redRows));
+
+        return game.isRedToMove() ? score : -score;
+    }
+
+    /**
+     * Scores a position on a board that takes more than one bitboard word, the same way as
+     * evaluate() does: windows are read one segment at a time, and threats are kept a word at a
+     * time.
+     */
+    private int evaluateWords(Connect4Game game, Connect4Windows index)
+    {
+        int words = game.getWordCount();
+        long[] redThreats = new long[words];
+        long[] yellowThreats = new long[words];
+        int three = index.getWindowLength() - 1;
+        int two = three - 1;
+
+        int score = 0;
+        int count = index.getWindowCount();
+        for (int i = 0; i < count; i++)
+        {
+            int start = index.getSegmentStart(i);
+            int end = index.getSegmentStart(i + 1);
+            int redTokens = 0;
+            int yellowTokens = 0;
+            for (int s = start; s < end; s++)
+            {
+                int word = index.getSegmentWord(s);
+                long segment = index.getSegmentMask(s);
+                redTokens += Long.bitCount(game.getRedBits(word) & segment);
+                yellowTokens += Long.bitCount(game.getYellowBits(word) & segment);
+            }
+            if (yellowTokens == 0 && redTokens != 0)
+            {
+                if (redTokens == three)
+                {
+                    score += threeWeight;
+                    addThreat(game, index, start, end, true, redThreats);
+                }
+                else if (redTokens == two)
+                {
+                    score += twoWeight;
+                }
+            }
+            else if (redTokens == 0 && yellowTokens != 0)
+            {
+                if (yellowTokens == three)
+                {
+                    score -= threeWeight;
+                    addThreat(game, index, start, end, false, yellowThreats);
+                }
+                else if (yellowTokens == two)
+                {
+                    score -= twoWeight;
+                }
+            }
+        }
+
+        int columns = game.getColumnCount();
+        score += centerWeight * centerTokens(game, index, columns / 2);
+        if ((columns & 1) == 0)
+        {
+            score += centerWeight * centerTokens(game, index, columns / 2 - 1);
+        }
+
+        long redRows = game.getRedPlayedFirst() ? index.getOddRowMask() : ~index.getOddRowMask();
+        for (int w = 0; w < words; w++)
+        {
+            score += parityWeight
+                * (Long.bitCount(redThreats[w] & redRows) - Long.bitCount(yellowThreats[w] & ~redRows));
+        }
+
+        return game.isRedToMove() ? score : -score;
+    }
+
+    /**
+     * Adds the empty slot of an open three, given by its segments, to a player's threats.
+     */
+    private static void addThreat(Connect4Game game, Connect4Windows index, int start, int end,
+        boolean red, long[] threats)
+    {
+        for (int s = start; s < end; s++)
+        {
+            int word = index.getSegmentWord(s);
+            threats[word] |= index.getSegmentMask(s) & ~(red ? game.getRedBits(word) : game.getYellowBits(word));
+        }
+    }
+
+    /**
+     * Returns the number of red tokens in a column minus the number of yellow ones.
+     */
+    private static int centerTokens(Connect4Game game, Connect4Windows index, int column)
+    {
+        int word = game.getColumnWord(column);
+        long mask = index.getColumnMask(column);
+        return Long.bitCount(game.getRedBits(word) & mask) - Long.bitCount(game.getYellowBits(word) & mask);
+    }
+}
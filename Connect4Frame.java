@@ -1,4 +1,5 @@
 import javax.swing.*;
+import javax.swing.event.*;
 import java.awt.*;
 import java.awt.event.*;
 import java.util.Random;
@@ -6,6 +7,10 @@ import java.util.Random;
 /**
  * The main driver of the Connect4Game, as well as the visualization of it.
  * 
+ * The game is played by a Connect4GameDriver on a thread of its own, so the window keeps
+ * responding while the agents think; the frame only shows the copies of the board the driver
+ * hands it.
+ * 
  * You should not modify this class, and your agent should not need to access the methods within
  * it directly.
  */
@@ -14,8 +19,10 @@ public class Connect4Frame extends JFrame
     Connect4Panel myPanel;  // the panel storing the visual of the game itself
     Connect4Game myGame;    // the game itself
     Agent redPlayer, yellowPlayer;   // the two players playing the game
-    boolean redPlayerturn, gameActive;  // booleans controlling whose turn it is and whether a game is ongoing
-    JButton newGameButton, nextMoveButton, playToEndButton;   // the buttons controlling the game
+    Connect4GameDriver driver;  // plays the game on its own thread
+    boolean gameActive;  // whether a game is ongoing, as last shown
+    JButton newGameButton, nextMoveButton, playToEndButton, pauseButton, stopButton;   // the buttons controlling the game
+    JSlider delaySlider;    // the delay between moves when playing to the end
     JLabel updateLabel; // the status label describing the events of the game
     Random r;   // a random number generator to randomly decide who plays first
 
@@ -38,7 +45,13 @@ public class Connect4Frame extends JFrame
         gameActive = false;   // initially sets that no game is active
         r = new Random();   // creates the random number generator
 
-        myPanel = new Connect4Panel(game);  // creates the panel for displaying the game
+        myPanel = new Connect4Panel(new Connect4Game(game));  // creates the panel for displaying the game, showing a copy of it
+        driver = new Connect4GameDriver(game, redPlayer, yellowPlayer, new Connect4GameDriver.Listener() {  // creates the driver, which reports back on the event thread
+                public void gameChanged(Connect4Game position, String status, boolean active, boolean playing)
+                {
+                    Connect4Frame.this.gameChanged(position, status, active, playing);
+                }
+            });
 
         newGameButton = new JButton("Start a New Game");    // creates the button for starting a new game
         newGameButton.setAlignmentX(Component.CENTER_ALIGNMENT);    // center-aligns the new game button
@@ -69,6 +82,36 @@ public class Connect4Frame extends JFrame
                 }
             });
 
+        pauseButton = new JButton("Pause");   // creates the button for pausing a game being played to the end
+        pauseButton.setEnabled(false);  // disables the button until a game is being played to the end
+        pauseButton.setAlignmentX(Component.CENTER_ALIGNMENT);  // centers the button
+        pauseButton.addActionListener(new ActionListener() {    // connects the pause button to its buttonPressed method
+                public void actionPerformed(ActionEvent e)
+                {
+                    pauseButtonPressed();
+                }
+            });
+
+        stopButton = new JButton("Stop Game");   // creates the button for ending a game early
+        stopButton.setEnabled(false);  // disables the button until a game is started
+        stopButton.setAlignmentX(Component.CENTER_ALIGNMENT);  // centers the button
+        stopButton.addActionListener(new ActionListener() {    // connects the stop button to its buttonPressed method
+                public void actionPerformed(ActionEvent e)
+                {
+                    stopButtonPressed();
+                }
+            });
+
+        delaySlider = new JSlider(0, 2000, 0);  // creates the slider for the delay between moves, in milliseconds
+        delaySlider.setToolTipText("Delay between moves when playing to the end");
+        delaySlider.setMaximumSize(new Dimension(150, delaySlider.getPreferredSize().height));
+        delaySlider.addChangeListener(new ChangeListener() {    // hands the delay to the driver whenever it changes
+                public void stateChanged(ChangeEvent e)
+                {
+                    driver.setMoveDelay(delaySlider.getValue());
+                }
+            });
+
         updateLabel = new JLabel(redPlayer.toString() + " vs. " + yellowPlayer.toString()); // creates the status label
         updateLabel.setAlignmentX(Component.CENTER_ALIGNMENT);  // centers the status label
 
@@ -81,6 +124,13 @@ public class Connect4Frame extends JFrame
         buttonPane.add(nextMoveButton);
         buttonPane.add(Box.createRigidArea(new Dimension(10,0)));
         buttonPane.add(playToEndButton);
+        buttonPane.add(Box.createRigidArea(new Dimension(10,0)));
+        buttonPane.add(pauseButton);
+        buttonPane.add(Box.createRigidArea(new Dimension(10,0)));
+        buttonPane.add(stopButton);
+        buttonPane.add(Box.createRigidArea(new Dimension(10,0)));
+        buttonPane.add(new JLabel("Delay:"));
+        buttonPane.add(delaySlider);
         buttonPane.add(Box.createHorizontalGlue());
 
         setLayout(new BoxLayout(getContentPane(),BoxLayout.Y_AXIS));    // sets the overall pane to be vertically oriented
@@ -94,124 +144,51 @@ public class Connect4Frame extends JFrame
     }
 
     /**
-     * Changes the text of the update label.
+     * Sets the time control of the games, from the next new game on. There is no time limit
+     * unless one is set.
      * 
      * Your agent will not need to use this method.
      * 
-     * @param text the next text for the update label.
+     * @param clock a clock with the time control.
      */
-    public void alert(String text)
+    public void setClock(Connect4Clock clock)
     {
-        updateLabel.setText(text);
-        this.repaint();
+        driver.setClock(clock);
     }
 
     /**
-     * Runs the next move of the game.
+     * Changes the text of the update label.
      * 
      * Your agent will not need to use this method.
-     */
-    private void nextMove()
-    {
-        Connect4Game oldBoard = new Connect4Game(myGame);   // store the old board for validation
-        if(redPlayerturn) // if it's the red player's turn, run their move
-        {
-            redPlayer.move();
-            alert(yellowPlayer.toString() + " plays next...");
-        }
-        else // if it's the yellow player's turn, run their move
-        {
-            yellowPlayer.move();
-            alert(redPlayer.toString() + " plays next...");
-        }
-        String validateResult = oldBoard.validate(myGame); // check and make sure this is a valid next move for this board
-        if(validateResult.length() > 0) // if there was a validation error, show it and cancel the game
-        {
-            alert(validateResult);  // show the error
-            disableButtons();   // stop the game
-            gameActive = false;
-        }
-        redPlayerturn = !redPlayerturn;   // switch whose turn it is
-        char won = myGame.gameWon();    // check if the game has been won
-        if (won != 'N') // if the game has been won...
-        {
-            disableButtons();   // disable the buttons
-            gameActive = false;
-            if (myGame.gameWon() == 'R') // if red won, say so
-            {
-                alert(redPlayer.toString() + " wins!");
-            }
-            else if (myGame.gameWon() == 'Y') // if yellow won, say so
-            {
-                alert(yellowPlayer.toString() + " wins!");
-            }
-        }
-        else if (myGame.boardFull()) // if the board is full...
-        {
-            disableButtons();   // disable the buttons
-            alert("The game ended in a draw!"); // announce the draw
-            gameActive = false;
-        }
-        this.repaint();
-    }
-
-    /**
-     * Clear the board and start a new game.
      * 
-     * Your agent will not need to use this method.
+     * @param text the next text for the update label.
      */
-    private void newGame()
+    public void alert(String text)
     {
-        myGame.clearBoard();
-        enableButtons();
-        gameActive = true;
-        redPlayerturn = r.nextBoolean();
-        if (redPlayerturn)
-        {
-            alert(redPlayer.toString() + " plays first!");
-            myGame.setRedPlayedFirst(true);
-        }
-        else
-        {
-            alert(yellowPlayer.toString() + " plays first!");
-            myGame.setRedPlayedFirst(false);
-        }
+        updateLabel.setText(text);
         this.repaint();
     }
 
     /**
-     * Runs the game until it's over.
+     * Shows the state of the game handed over by the driver: the board, the status, and which
+     * buttons can be used.
      * 
      * Your agent will not need to use this method.
+     * 
+     * @param position a copy of the board.
+     * @param status the text for the update label.
+     * @param active true if the game can go on.
+     * @param playing true if the driver is making moves.
      */
-    private void playToEnd()
+    private void gameChanged(Connect4Game position, String status, boolean active, boolean playing)
     {
-        while (gameActive) // keep playing the next move until the game ends
-        {
-            nextMove();
-        }
-        char won = myGame.gameWon();
-        if (won != 'N') // when it ends, announce how it ended: win or draw
-        {
-            disableButtons();
-            if (myGame.gameWon() == 'R')
-            {
-                alert(redPlayer.toString() + " wins!");
-            }
-            else if (myGame.gameWon() == 'Y')
-            {
-                alert(yellowPlayer.toString() + " wins!");
-            }
-        }
-        else if (myGame.boardFull())
-        {
-            disableButtons();
-            alert("The game ended in a draw!");
-        }
-        else // if it didn't end in a win or draw, leave the error message u
-        {
-            disableButtons();
-        }
+        gameActive = active;
+        myPanel.showGame(position); // show the copy; the game itself belongs to the driver's thread
+        nextMoveButton.setEnabled(active && !playing);
+        playToEndButton.setEnabled(active && !playing);
+        pauseButton.setEnabled(active && playing);
+        stopButton.setEnabled(active);
+        alert(status);
     }
 
     /**
@@ -221,7 +198,7 @@ public class Connect4Frame extends JFrame
      */    
     public void newGameButtonPressed()
     {
-        newGame();
+        driver.newGame(r.nextBoolean());    // randomly decide who plays first
     }
 
     /**
@@ -231,7 +208,8 @@ public class Connect4Frame extends JFrame
      */
     public void nextMoveButtonPressed()
     {
-        nextMove();
+        disableButtons();   // until the driver has made the move
+        driver.nextMove();
     }
 
     /**
@@ -241,29 +219,41 @@ public class Connect4Frame extends JFrame
      */
     public void playToEndButtonPressed()
     {
-        playToEnd();
+        disableButtons();   // until the driver pauses or the game ends
+        driver.playToEnd();
     }
 
     /**
-     * Disables the buttons.
+     * Reacts to the pause button being pressed.
      * 
      * Your agent will not need to use this method.
      */
-    private void disableButtons()
+    public void pauseButtonPressed()
     {
-        nextMoveButton.setEnabled(false);
-        playToEndButton.setEnabled(false);
+        pauseButton.setEnabled(false);
+        driver.pause();
     }
 
     /**
-     * Enables the buttons.
+     * Reacts to the stop game button being pressed.
      * 
      * Your agent will not need to use this method.
      */
-    private void enableButtons()
+    public void stopButtonPressed()
     {
-        nextMoveButton.setEnabled(true);
-        playToEndButton.setEnabled(true);
+        disableButtons();
+        driver.stop();
+    }
+
+    /**
+     * Disables the buttons.
+     * 
+     * Your agent will not need to use this method.
+     */
+    private void disableButtons()
+    {
+        nextMoveButton.setEnabled(false);
+        playToEndButton.setEnabled(false);
     }
 
 }
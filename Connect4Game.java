@@ -1,18 +1,80 @@
+import java.util.Arrays;
+
 /**
  * The data structure for a game of Connect 4.
  * 
- * Connect4Game is made of a certain number of Connect4Columns. Each column represents
- * a column from the current state of the game.
+ * Connect4Game stores the whole board as two bitboards: one bit per slot for the slots holding
+ * a red token, and one bit per slot for the slots holding any token. Each column takes
+ * getRowCount() + 1 bits, with the bottom slot of the column in its lowest bit and one spare bit
+ * on top so columns never run into each other.
+ * 
+ * A bitboard is an array of 64-bit words, as many as the board needs. A board that fits in 64
+ * bits, such as the standard 7x6 board, takes a single word. On a larger board a column never
+ * straddles two words: each word holds the largest power of two of whole columns that fits in
+ * it, so the word of a column and its place in the word take a shift and a mask to find, and a
+ * 30x20 board takes fifteen words. Everything done to a column, from dropping a token to finding
+ * its height, works on the one word that holds it.
+ * 
+ * Connect4Columns and Connect4Slots are thin views over these bitboards: reading or filling a
+ * slot reads or writes the bits of the game it belongs to.
+ * 
+ * A game is won by the first player to get getWinLength() tokens in a line: four, unless the
+ * game was created with another win length, such as five or six for Connect 5 or Connect 6.
  * 
  * You should not modify this class, but you will need to use methods within it.
  */
 public class Connect4Game
 {
-    private Connect4Column[] columns;
+    /**
+     * The number of tokens in a line that wins a game created without a win length.
+     */
+    public static final int DEFAULT_WIN_LENGTH = 4;
+
+    // the steps along a line: vertical, horizontal and the two diagonals
+    private static final int[] DIRECTION_COLS = { 0, 1, 1, 1 };
+    private static final int[] DIRECTION_ROWS = { 1, 0, 1, -1 };
+    // a random key for each bit of the first bitboard word and token color, and one for red to
+    // move; the keys come from a fixed seed so hashes stay the same from run to run
+    private static final long[] ZOBRIST_KEYS = new long[2 * Long.SIZE];
+    private static final long RED_TO_MOVE_KEY;
+    static
+    {
+        long seed = 0x1F2E3D4C5B6A7988L;
+        for (int i = 0; i < ZOBRIST_KEYS.length; i++)
+        {
+            seed += 0x9E3779B97F4A7C15L;
+            ZOBRIST_KEYS[i] = mix(seed);
+        }
+        RED_TO_MOVE_KEY = mix(seed + 0x9E3779B97F4A7C15L);
+    }
+    // the keys for boards of more than one word: those of ZOBRIST_KEYS, then keys from a second
+    // seed for the bits of the other words; grown when a larger board is first created
+    private static final long WIDE_ZOBRIST_SEED = 0x6C8E9CF570932BD5L;
+    private static long[] wideZobristKeys = ZOBRIST_KEYS;
+
+    private int numCols;
+    private int numRows;
+    private int winLength;          // the number of tokens in a line that wins
+    private int wordShift;          // the word of a column is column >>> wordShift
+    private int wordColumnMask;     // the place of a column in its word is column & wordColumnMask
+    private long[] zobristKeys;     // per bit of the bitboard and token color
+    private long[] redBits;         // slots holding a red token
+    private long[] filledBits;      // slots holding any token
+    private long[] highlightedBits; // slots highlighted as part of a winning line
+    private long tokenHash;         // Zobrist hash of the tokens on the board
+    private int moveCount;          // the number of filled slots
+    private int lastColumn = -1;    // the slot most recently filled, or -1 if none
+    private int lastRow = -1;
+    private int[] history;          // the columns played with play(), most recent last
+    private int historySize;
     private boolean redPlayedFirst;
+    private Connect4Column[] columns;   // views handed out by getColumn, created on first use
     
     /**
-     * Construct a new Connect 4 game with the given size.
+     * Construct a new Connect 4 game with the given size, won by four tokens in a line.
+     * 
+     * A column and the spare bit above it must fit in a 64-bit word, so numRows may not exceed
+     * 63. There is no limit on the number of columns.
      * 
      * Your agent will not need to use this method.
      * 
@@ -21,14 +83,57 @@ public class Connect4Game
      */
     public Connect4Game(int numCols, int numRows)
     {
-        columns=new Connect4Column[numCols];
-        for(int i = 0; i < numCols; i++)
+        this(numCols, numRows, DEFAULT_WIN_LENGTH);
+    }
+    /**
+     * Construct a new game with the given size, won by the given number of tokens in a line.
+     * 
+     * The win length may be from 2 to 64. It may be longer than the board is wide or high, in
+     * which case no line in that direction can win.
+     * 
+     * Your agent will not need to use this method.
+     * 
+     * @param numCols The number of columns in the game board
+     * @param numRows The number of rows in the game board
+     * @param winLength The number of tokens in a line that wins the game
+     */
+    public Connect4Game(int numCols, int numRows, int winLength)
+    {
+        if (numCols < 1 || numRows < 1)
         {
-            columns[i] = new Connect4Column(numRows);
+            throw new IllegalArgumentException("A game needs at least one column and one row.");
         }
+        if (numRows + 1 > Long.SIZE)
+        {
+            throw new IllegalArgumentException("A column of " + numRows + " rows does not fit in a 64-bit bitboard word.");
+        }
+        if (winLength < 2 || winLength > Long.SIZE)
+        {
+            throw new IllegalArgumentException("A winning line must be from 2 to 64 tokens long.");
+        }
+        this.numCols = numCols;
+        this.numRows = numRows;
+        this.winLength = winLength;
+        int words = 1;
+        if ((long) numCols * (numRows + 1) <= Long.SIZE)
+        {
+            wordShift = Integer.SIZE - 1;   // every column is in word 0
+            wordColumnMask = Integer.MAX_VALUE;
+        }
+        else
+        {
+            int columnsPerWord = Integer.highestOneBit(Long.SIZE / (numRows + 1));
+            wordShift = Integer.numberOfTrailingZeros(columnsPerWord);
+            wordColumnMask = columnsPerWord - 1;
+            words = (numCols + columnsPerWord - 1) >>> wordShift;
+        }
+        this.zobristKeys = words == 1 ? ZOBRIST_KEYS : wideZobristKeys(words);
+        this.redBits = new long[words];
+        this.filledBits = new long[words];
+        this.highlightedBits = new long[words];
     }
     /**
-     * Copy an existing Connect 4 game.
+     * Copy an existing Connect 4 game, highlights included. The copy starts with no moves to undo.
      * 
      * Your agent will not need to use this method.
      * 
@@ -36,11 +141,20 @@ public class Connect4Game
      */
     public Connect4Game(Connect4Game game)
     {
-        columns = new Connect4Column[game.getColumnCount()];
-        for (int i = 0; i < game.getColumnCount(); i++)
-        {
-            columns[i] = new Connect4Column(game.getColumn(i));
-        }
+        this.numCols = game.numCols;
+        this.numRows = game.numRows;
+        this.winLength = game.winLength;
+        this.wordShift = game.wordShift;
+        this.wordColumnMask = game.wordColumnMask;
+        this.zobristKeys = game.zobristKeys;
+        this.redBits = game.redBits.clone();
+        this.filledBits = game.filledBits.clone();
+        this.highlightedBits = game.highlightedBits.clone();
+        this.tokenHash = game.tokenHash;
+        this.moveCount = game.moveCount;
+        this.lastColumn = game.lastColumn;
+        this.lastRow = game.lastRow;
+        this.redPlayedFirst = game.redPlayedFirst;
     }
     
     /**
@@ -53,8 +167,16 @@ public class Connect4Game
      */
     public Connect4Column getColumn(int i)
     {
-        if (i < columns.length && i >= 0)
+        if (i < numCols && i >= 0)
         {
+            if (columns == null)
+            {
+                columns = new Connect4Column[numCols];
+            }
+            if (columns[i] == null)
+            {
+                columns[i] = new Connect4Column(this, i);
+            }
             return columns[i];
         }
         else
@@ -72,7 +194,7 @@ public class Connect4Game
      */
     public int getColumnCount()
     {
-        return columns.length;
+        return numCols;
     }
     /**
      * Get the total number of rows in the game board.
@@ -83,7 +205,18 @@ public class Connect4Game
      */
     public int getRowCount()
     {
-        return columns[0].getRowCount();
+        return numRows;
+    }
+    /**
+     * Get the number of tokens in a line that wins the game.
+     * 
+     * Your agent MAY want to use this method.
+     * 
+     * @return the win length; 4 for Connect 4.
+     */
+    public int getWinLength()
+    {
+        return winLength;
     }
     /**
      * Start a new game.
@@ -92,12 +225,150 @@ public class Connect4Game
      */
     public void clearBoard()
     {
-        for (int i = 0; i < getColumnCount(); i++)
+        Arrays.fill(redBits, 0L);
+        Arrays.fill(filledBits, 0L);
+        Arrays.fill(highlightedBits, 0L);
+        tokenHash = 0L;
+        moveCount = 0;
+        lastColumn = -1;
+        lastRow = -1;
+        historySize = 0;
+    }
+    /**
+     * Get the number of tokens on the board.
+     * 
+     * Your agent will not need to use this method.
+     * 
+     * @return the number of filled slots.
+     */
+    public int getMoveCount()
+    {
+        return moveCount;
+    }
+    /**
+     * Check whose turn it is, based on who played first and how many tokens have been placed.
+     * 
+     * Your agent will not need to use this method.
+     * 
+     * @return true if red places the next token, false if yellow does.
+     */
+    public boolean isRedToMove()
+    {
+        return ((getMoveCount() & 1) == 0) == redPlayedFirst;
+    }
+    /**
+     * Check if a token can be dropped into a column.
+     * 
+     * Your agent will not need to use this method.
+     * 
+     * @param column the column to check.
+     * @return true if the column exists and is not full, false otherwise.
+     */
+    public boolean canPlay(int column)
+    {
+        return column >= 0 && column < numCols && (filledBits[column >>> wordShift] & bit(column, 0)) == 0;
+    }
+    /**
+     * Get the number of tokens stacked from the bottom of a column, without gaps.
+     * 
+     * Your agent will not need to use this method; use Connect4Column.getHeight() instead.
+     * 
+     * @param column the column to check.
+     * @return the height of the column.
+     */
+    public int getHeight(int column)
+    {
+        // the spare bit above the column is never filled, so the run of ones stops there
+        return Long.numberOfTrailingZeros(~(filledBits[column >>> wordShift] >>> shift(column)));
+    }
+    /**
+     * Check if every slot of a column is filled.
+     * 
+     * Your agent will not need to use this method; use Connect4Column.getIsFull() instead.
+     * 
+     * @param column the column to check.
+     * @return true if the column is full, false otherwise.
+     */
+    public boolean isColumnFull(int column)
+    {
+        long mask = columnMask(column);
+        return (filledBits[column >>> wordShift] & mask) == mask;
+    }
+    /**
+     * Check if the player whose turn it is would win by dropping a token into a column.
+     * 
+     * Your agent will not need to use this method.
+     * 
+     * @param column the column to check; it must not be full.
+     * @return true if the move would complete a line of getWinLength() tokens, false otherwise.
+     */
+    public boolean isWinningMove(int column)
+    {
+        return winningLine(column, numRows - 1 - getHeight(column), isRedToMove(), false);
+    }
+    /**
+     * Drop a token of the player whose turn it is into a column. The move can be taken back
+     * with undo(), so a search can explore moves on one game without copying it.
+     * 
+     * Your agent will not need to use this method.
+     * 
+     * @param column the column to drop the token into.
+     * @throws IllegalArgumentException if the column does not exist or is full.
+     */
+    public void play(int column)
+    {
+        if (!canPlay(column))
         {
-            for (int j = 0; j < getRowCount(); j++)
-            {
-                getColumn(i).getSlot(j).clear();
-            }
+            throw new IllegalArgumentException("Cannot play in column " + column + ".");
+        }
+        int word = column >>> wordShift;
+        long bit = (filledBits[word] + bit(column, numRows - 1)) & columnMask(column);  // lowest empty slot
+        boolean red = isRedToMove();
+        if (red)
+        {
+            redBits[word] |= bit;
+        }
+        filledBits[word] |= bit;
+        tokenHash ^= zobristKey(word, bit, red);
+        moveCount++;
+        lastColumn = column;
+        lastRow = rowOf(bit);
+        if (history == null)
+        {
+            history = new int[numCols * numRows];
+        }
+        history[historySize++] = column;
+    }
+    /**
+     * Take back the last token placed with play().
+     * 
+     * Your agent will not need to use this method.
+     * 
+     * @throws IllegalStateException if there is no move to take back.
+     */
+    public void undo()
+    {
+        if (historySize == 0)
+        {
+            throw new IllegalStateException("There is no move to undo.");
+        }
+        int column = history[--historySize];
+        int word = column >>> wordShift;
+        long bit = Long.highestOneBit(filledBits[word] & columnMask(column));  // top token
+        tokenHash ^= zobristKey(word, bit, (redBits[word] & bit) != 0);
+        filledBits[word] &= ~bit;
+        redBits[word] &= ~bit;
+        highlightedBits[word] &= ~bit;
+        moveCount--;
+        if (historySize > 0)
+        {
+            lastColumn = history[historySize - 1];
+            lastRow = rowOf(Long.highestOneBit(filledBits[lastColumn >>> wordShift] & columnMask(lastColumn)));
+        }
+        else
+        {
+            lastColumn = -1;
+            lastRow = -1;
         }
     }
     /**
@@ -109,14 +380,14 @@ public class Connect4Game
      */
     public char[][] getBoardMatrix()
     {
-        char[][] board = new char[getRowCount()][getColumnCount()];
-        for (int i = 0; i < getColumnCount(); i++)
+        char[][] board = new char[numRows][numCols];
+        for (int i = 0; i < numCols; i++)
         {
-            for(int j = 0; j < getRowCount(); j++) 
+            for(int j = 0; j < numRows; j++)
             {
-                if (getColumn(i).getSlot(j).getIsFilled())
+                if (isFilled(i, j))
                 {
-                    if (getColumn(i).getSlot(j).getIsRed())
+                    if (isRed(i, j))
                     {
                         board[j][i] = 'R';
                     }
@@ -142,18 +413,7 @@ public class Connect4Game
      */
     public boolean boardFull()
     {
-        char[][] board = getBoardMatrix();
-        for (int i = 0; i < getColumnCount(); i++)
-        {
-            for (int j = 0; j < getRowCount(); j++)
-            {
-                if (board[j][i] == 'B')
-                {
-                    return false;
-                }
-            }
-        }
-        return true;
+        return moveCount == numCols * numRows;
     }
     /**
      * Check if the game has been won.
@@ -164,56 +424,30 @@ public class Connect4Game
      */
     public char gameWon()
     {
-        char[][] board = getBoardMatrix();
-        
-        for (int i = 0; i < getColumnCount(); i++)
+        for (int i = 0; i < numCols; i++)
         {
-            for (int j = 0; j < getRowCount(); j++)
+            for (int j = 0; j < numRows; j++)
             {
-                if(board[j][i] != 'B')
+                if (isFilled(i, j))
                 {
-                    if (j + 3 < getRowCount())
-                    {
-                        if(board[j][i] == board[j + 1][i] && board[j][i] == board[j + 2][i] && board[j][i] == board[j + 3][i])
-                        {
-                            highlightSlot(j, i);
-                            highlightSlot(j + 1, i);
-                            highlightSlot(j + 2, i);
-                            highlightSlot(j + 3, i);
-                            return board[j][i];
-                        }
-                    }
-                    if (i + 3 < getColumnCount())
-                    {
-                        if (board[j][i] == board[j][i + 1] && board[j][i] == board[j][i + 2] && board[j][i] == board[j][i + 3])
-                        {
-                            highlightSlot(j, i);
-                            highlightSlot(j, i + 1);
-                            highlightSlot(j, i + 2);
-                            highlightSlot(j, i + 3);
-                            return board[j][i];
-                        }
-                    }
-                    if (i + 3 < getColumnCount() && j + 3 < getRowCount())
+                    boolean red = isRed(i, j);
+                    for (int direction = 0; direction < DIRECTION_COLS.length; direction++)
                     {
-                        if(board[j][i] == board[j + 1][i + 1] && board[j][i] == board[j + 2][i + 2] && board[j][i] == board[j + 3][i + 3])
+                        // follow each line down the board, or to the right along a row
+                        int dc = DIRECTION_COLS[direction];
+                        int dr = DIRECTION_ROWS[direction];
+                        if (dr < 0)
                         {
-                            highlightSlot(j, i);
-                            highlightSlot(j + 1, i + 1);
-                            highlightSlot(j + 2, i + 2);
-                            highlightSlot(j + 3,i + 3);
-                            return board[j][i];
+                            dc = -dc;
+                            dr = -dr;
                         }
-                    }
-                    if (i > 2 && j + 3 < getRowCount())
-                    {
-                        if (board[j][i] == board[j + 1][i - 1] && board[j][i] == board[j + 2][i - 2] && board[j][i] == board[j + 3][i - 3])
+                        if (run(i, j, dc, dr, red) == winLength - 1)
                         {
-                            highlightSlot(j, i);
-                            highlightSlot(j + 1, i - 1);
-                            highlightSlot(j + 2, i - 2);
-                            highlightSlot(j + 3, i - 3);
-                            return board[j][i];
+                            for (int k = 0; k < winLength; k++)
+                            {
+                                highlightSlot(j + k * dr, i + k * dc);
+                            }
+                            return red ? 'R' : 'Y';
                         }
                     }
                 }
@@ -222,6 +456,31 @@ public class Connect4Game
 
         return 'N';
     }
+    /**
+     * Check if the most recently placed token won the game.
+     * 
+     * Only the four lines through the last filled slot are checked, counting the run of tokens
+     * up to getWinLength() - 1 slots each way, so this takes time in proportion to the win length
+     * no matter the size of the board. The slots of the winning line are highlighted. Use
+     * gameWon() to check a board that was not built one token at a time.
+     * 
+     * Your agent will not need to use this method.
+     * 
+     * @return 'R' if red won, 'Y' if yellow won, 'N' if the last move did not win the game.
+     */
+    public char gameWonByLastMove()
+    {
+        if (lastColumn < 0 || !isFilled(lastColumn, lastRow))
+        {
+            return 'N';
+        }
+        boolean red = isRed(lastColumn, lastRow);
+        if (!winningLine(lastColumn, lastRow, red, true))
+        {
+            return 'N';
+        }
+        return red ? 'R' : 'Y';
+    }
     /**
      * Validate that the given board is a valid next state following this board.
      * 
@@ -297,6 +556,103 @@ public class Connect4Game
         }
         return "";
     }
+    /**
+     * Validate that this board is a valid next state following the board it was before the
+     * last move, as given by that board's getFilledWords() and getRedWords(). This finds the same
+     * invalid moves as validate(), without a copy of the old board and in time that only depends
+     * on the number of bitboard words: the move must add exactly one token, of the color whose
+     * turn it was, on top of its column, and change nothing else. A move that breaks several of
+     * these rules at once may be described by a different one of them than validate() would
+     * choose.
+     * 
+     * Your agent will not need to use this method.
+     * 
+     * @param filledBefore the filled slots before the move.
+     * @param redBefore the red tokens before the move.
+     * @return an empty string if the move was valid; otherwise, what was wrong with it.
+     * @throws IllegalArgumentException if the bitboards are not the size of this board's.
+     */
+    public String validateMove(long[] filledBefore, long[] redBefore)
+    {
+        if (filledBefore.length != filledBits.length || redBefore.length != redBits.length)
+        {
+            throw new IllegalArgumentException("The bitboards before the move are not the size of the board.");
+        }
+        for (int w = 0; w < filledBits.length; w++)
+        {
+            long removed = filledBefore[w] & ~filledBits[w];
+            if (removed != 0)
+            {
+                return "Invalid move: a token was removed at " + describeSlot(w, removed) + ".";
+            }
+        }
+        for (int w = 0; w < filledBits.length; w++)
+        {
+            long changed = filledBefore[w] & (redBefore[w] ^ redBits[w]);
+            if (changed != 0)
+            {
+                return "Invalid move: a token was changed at " + describeSlot(w, changed) + ".";
+            }
+        }
+        int addedWords = 0;
+        int word = -1;
+        long added = 0L;
+        for (int w = 0; w < filledBits.length; w++)
+        {
+            long bits = filledBits[w] & ~filledBefore[w];
+            if (bits != 0 && addedWords++ == 0)
+            {
+                word = w;
+                added = bits;
+            }
+        }
+        if (addedWords == 0)
+        {
+            return "Invalid move: no move was made.";
+        }
+        if (addedWords > 1 || (added & (added - 1)) != 0)
+        {
+            // a floating token is reported first, as validate() would
+            for (int w = 0; w < filledBits.length; w++)
+            {
+                long bits = filledBits[w] & ~filledBefore[w];
+                long floating = bits & ~(filledBits[w] << 1) & ~bottomBitsOf(bits);
+                if (floating != 0)
+                {
+                    return "Invalid move: a token in column " + columnOf(w, floating)
+                        + " was not placed in the highest open slot.";
+                }
+            }
+            return "Invalid move: more than one token was placed.";
+        }
+        if (Long.numberOfTrailingZeros(added) % (numRows + 1) != 0 && (filledBefore[word] & (added >>> 1)) == 0)
+        {
+            return "Invalid move: a token in column " + columnOf(word, added) + " was not placed in the highest open slot.";
+        }
+        // exactly one token was added and none removed, so the board had one token fewer
+        boolean redToMove = (((moveCount - 1) & 1) == 0) == redPlayedFirst;
+        boolean redAdded = (redBits[word] & added) != 0;
+        if (redAdded != redToMove)
+        {
+            return redAdded ? "Invalid move: red moved during yellow's turn." : "Invalid move: yellow moved during red's turn.";
+        }
+        return "";
+    }
+    /**
+     * Validate a move on a board that takes a single bitboard word, as given by the old board's
+     * getFilledBits() and getRedBits(). See validateMove(long[], long[]).
+     * 
+     * Your agent will not need to use this method.
+     * 
+     * @param filledBefore the filled slots before the move.
+     * @param redBefore the red tokens before the move.
+     * @return an empty string if the move was valid; otherwise, what was wrong with it.
+     * @throws IllegalArgumentException if the board takes more than one word.
+     */
+    public String validateMove(long filledBefore, long redBefore)
+    {
+        return validateMove(new long[] { filledBefore }, new long[] { redBefore });
+    }
     /**
      * Highlight the winning moves in a game.
      * 
@@ -307,7 +663,7 @@ public class Connect4Game
      */
     public void highlightSlot(int row, int column)
     {
-        getColumn(column).getSlot(row).highlight();
+        highlightedBits[column >>> wordShift] |= bit(column, row);
     }
     
     /**
@@ -333,4 +689,580 @@ public class Connect4Game
     {
         this.redPlayedFirst = redPlayedFirst;
     }
+
+    /**
+     * Returns a key that identifies the tokens on the board. On a board that takes a single
+     * bitboard word, two boards of the same size have the same key exactly when they hold the
+     * same tokens in the same slots, so the key can be used in place of the board in hash
+     * tables. On larger boards the key is worked out from every word, and different boards only
+     * rarely share one.
+     * 
+     * Your agent will not need to use this method.
+     * 
+     * @return the position key of the board.
+     */
+    public long getPositionKey()
+    {
+        // every column of filledBits is a run of ones from the bottom, and redBits lies inside
+        // it, so the sum carries into the spare bit above a column only when it is full
+        long key = filledBits[0] + redBits[0];
+        for (int w = 1; w < filledBits.length; w++)
+        {
+            key = mix(key) + filledBits[w] + redBits[w];
+        }
+        return key;
+    }
+
+    /**
+     * Returns the Zobrist hash of the position: the tokens on the board and whose turn it is.
+     * The hash is kept up to date as tokens are added and removed, so this takes constant time.
+     * Equal positions have equal hashes; different positions almost always have different ones.
+     * 
+     * Your agent will not need to use this method.
+     * 
+     * @return the 64-bit hash of the position.
+     */
+    public long getHash()
+    {
+        return isRedToMove() ? tokenHash ^ RED_TO_MOVE_KEY : tokenHash;
+    }
+
+    /**
+     * Returns the number of 64-bit words the bitboards of the board take.
+     * 
+     * Your agent will not need to use this method.
+     * 
+     * @return the number of bitboard words, 1 for any board of up to 64 bits.
+     */
+    public int getWordCount()
+    {
+        return filledBits.length;
+    }
+
+    /**
+     * Returns the bitboard word that holds a column.
+     * 
+     * Your agent will not need to use this method.
+     * 
+     * @param column the column.
+     * @return the index of the word holding every slot of the column.
+     */
+    public int getColumnWord(int column)
+    {
+        return column >>> wordShift;
+    }
+
+    /**
+     * Returns the first word of the bitboard of the red tokens: on a board that takes a single
+     * word, the whole bitboard. See getSlotBit() for the layout.
+     * 
+     * Your agent will not need to use this method.
+     * 
+     * @return a bitboard with the slots holding red tokens set.
+     */
+    public long getRedBits()
+    {
+        return redBits[0];
+    }
+
+    /**
+     * Returns a word of the bitboard of the red tokens. See getSlotBit() for the layout.
+     * 
+     * Your agent will not need to use this method.
+     * 
+     * @param word the index of the word, from 0 to getWordCount() - 1.
+     * @return the word with the slots holding red tokens set.
+     */
+    public long getRedBits(int word)
+    {
+        return redBits[word];
+    }
+
+    /**
+     * Returns the first word of the bitboard of the yellow tokens: on a board that takes a
+     * single word, the whole bitboard. See getSlotBit() for the layout.
+     * 
+     * Your agent will not need to use this method.
+     * 
+     * @return a bitboard with the slots holding yellow tokens set.
+     */
+    public long getYellowBits()
+    {
+        return filledBits[0] & ~redBits[0];
+    }
+
+    /**
+     * Returns a word of the bitboard of the yellow tokens. See getSlotBit() for the layout.
+     * 
+     * Your agent will not need to use this method.
+     * 
+     * @param word the index of the word, from 0 to getWordCount() - 1.
+     * @return the word with the slots holding yellow tokens set.
+     */
+    public long getYellowBits(int word)
+    {
+        return filledBits[word] & ~redBits[word];
+    }
+
+    /**
+     * Returns the first word of the bitboard of all tokens: on a board that takes a single
+     * word, the whole bitboard. See getSlotBit() for the layout.
+     * 
+     * Your agent will not need to use this method.
+     * 
+     * @return a bitboard with the filled slots set.
+     */
+    public long getFilledBits()
+    {
+        return filledBits[0];
+    }
+
+    /**
+     * Returns a word of the bitboard of all tokens. See getSlotBit() for the layout.
+     * 
+     * Your agent will not need to use this method.
+     * 
+     * @param word the index of the word, from 0 to getWordCount() - 1.
+     * @return the word with the filled slots set.
+     */
+    public long getFilledBits(int word)
+    {
+        return filledBits[word];
+    }
+
+    /**
+     * Returns a copy of every word of the bitboard of all tokens, to check a move with
+     * validateMove().
+     * 
+     * Your agent will not need to use this method.
+     * 
+     * @return the words of the bitboard with the filled slots set.
+     */
+    public long[] getFilledWords()
+    {
+        return filledBits.clone();
+    }
+
+    /**
+     * Returns a copy of every word of the bitboard of the red tokens, to check a move with
+     * validateMove().
+     * 
+     * Your agent will not need to use this method.
+     * 
+     * @return the words of the bitboard with the slots holding red tokens set.
+     */
+    public long[] getRedWords()
+    {
+        return redBits.clone();
+    }
+
+    /**
+     * Returns the first word of the bitboard of the slots highlighted as part of a winning line:
+     * on a board that takes a single word, the whole bitboard. See getSlotBit() for the layout.
+     * 
+     * Your agent will not need to use this method.
+     * 
+     * @return a bitboard with the highlighted slots set.
+     */
+    public long getHighlightedBits()
+    {
+        return highlightedBits[0];
+    }
+
+    /**
+     * Returns a word of the bitboard of the slots highlighted as part of a winning line. See
+     * getSlotBit() for the layout.
+     * 
+     * Your agent will not need to use this method.
+     * 
+     * @param word the index of the word, from 0 to getWordCount() - 1.
+     * @return the word with the highlighted slots set.
+     */
+    public long getHighlightedBits(int word)
+    {
+        return highlightedBits[word];
+    }
+
+    /**
+     * Returns the first word of the bitboard of the slots the next token dropped into each
+     * column would land in: on a board that takes a single word, the whole bitboard.
+     * 
+     * Your agent will not need to use this method.
+     * 
+     * @return a bitboard with the lowest empty slot of every column that is not full set.
+     */
+    public long getPlayableBits()
+    {
+        return getPlayableBits(0);
+    }
+
+    /**
+     * Returns a word of the bitboard of the slots the next token dropped into each column would
+     * land in.
+     * 
+     * Your agent will not need to use this method.
+     * 
+     * @param word the index of the word, from 0 to getWordCount() - 1.
+     * @return the word with the lowest empty slot of every column that is not full set.
+     */
+    public long getPlayableBits(int word)
+    {
+        return (filledBits[word] + bottomMask(word)) & boardMask(word);
+    }
+
+    /**
+     * Returns the bitboard bit of a slot, in the word getColumnWord() gives for its column.
+     * On a board that takes a single word, column i takes bits i * (getRowCount() + 1) and up,
+     * starting from its bottom slot; the bit above its top slot is always clear. On a larger
+     * board, column i takes bits (i % c) * (getRowCount() + 1) and up of word i / c, where c is
+     * the largest power of two of columns that fits in 64 bits.
+     * 
+     * Your agent will not need to use this method.
+     * 
+     * @param column the column of the slot.
+     * @param row the row of the slot, 0 being the top row.
+     * @return the bitboard word with only that slot set.
+     */
+    public long getSlotBit(int column, int row)
+    {
+        return bit(column, row);
+    }
+
+    /**
+     * Checks if another game has the same size and win length and the same tokens in the same
+     * slots. Highlights and who played first are not compared.
+     * 
+     * @param other the object to compare with.
+     * @return true if other is a game with the same tokens, false otherwise.
+     */
+    public boolean equals(Object other)
+    {
+        if (!(other instanceof Connect4Game))
+        {
+            return false;
+        }
+        Connect4Game game = (Connect4Game) other;
+        return numCols == game.numCols && numRows == game.numRows && winLength == game.winLength
+            && Arrays.equals(redBits, game.redBits) && Arrays.equals(filledBits, game.filledBits);
+    }
+
+    /**
+     * Returns a hash code consistent with equals.
+     * 
+     * @return the hash code of the board.
+     */
+    public int hashCode()
+    {
+        return Long.hashCode(getPositionKey() * 0x9E3779B97F4A7C15L);
+    }
+
+    /**
+     * Checks if a slot holds a token. Used by Connect4Slot.
+     * 
+     * @param column the column of the slot.
+     * @param row the row of the slot.
+     * @return true if the slot is filled, false if not.
+     */
+    boolean isFilled(int column, int row)
+    {
+        return (filledBits[column >>> wordShift] & bit(column, row)) != 0;
+    }
+
+    /**
+     * Checks if a slot holds a red token. Used by Connect4Slot.
+     * 
+     * @param column the column of the slot.
+     * @param row the row of the slot.
+     * @return true if the slot holds a red token, false otherwise.
+     */
+    boolean isRed(int column, int row)
+    {
+        return (redBits[column >>> wordShift] & bit(column, row)) != 0;
+    }
+
+    /**
+     * Checks if a slot is highlighted. Used by Connect4Slot.
+     * 
+     * @param column the column of the slot.
+     * @param row the row of the slot.
+     * @return true if the slot is highlighted, false if not.
+     */
+    boolean isHighlighted(int column, int row)
+    {
+        return (highlightedBits[column >>> wordShift] & bit(column, row)) != 0;
+    }
+
+    /**
+     * If a slot is empty, places a token in it. Used by Connect4Slot.
+     * 
+     * @param column the column of the slot.
+     * @param row the row of the slot.
+     * @param red true to place a red token, false to place a yellow token.
+     */
+    void addToken(int column, int row, boolean red)
+    {
+        int word = column >>> wordShift;
+        long bit = bit(column, row);
+        if ((filledBits[word] & bit) == 0)
+        {
+            filledBits[word] |= bit;
+            if (red)
+            {
+                redBits[word] |= bit;
+            }
+            tokenHash ^= zobristKey(word, bit, red);
+            moveCount++;
+            lastColumn = column;
+            lastRow = row;
+        }
+    }
+
+    /**
+     * Empties a slot and removes its highlight. Used by Connect4Slot.
+     * 
+     * @param column the column of the slot.
+     * @param row the row of the slot.
+     */
+    void clearSlot(int column, int row)
+    {
+        int word = column >>> wordShift;
+        long bit = bit(column, row);
+        if ((filledBits[word] & bit) != 0)
+        {
+            tokenHash ^= zobristKey(word, bit, (redBits[word] & bit) != 0);
+            moveCount--;
+        }
+        filledBits[word] &= ~bit;
+        redBits[word] &= ~bit;
+        highlightedBits[word] &= ~bit;
+        if (column == lastColumn && row == lastRow)
+        {
+            lastColumn = -1;
+            lastRow = -1;
+        }
+    }
+
+    /**
+     * Returns the bitboard bit of a slot, in the word that holds its column. Row 0 is the top
+     * of the board, so the bottom slot of a column is its lowest bit.
+     */
+    private long bit(int column, int row)
+    {
+        return 1L << (shift(column) + numRows - 1 - row);
+    }
+
+    /**
+     * Returns the bit of its word that a column starts at.
+     */
+    private int shift(int column)
+    {
+        return (column & wordColumnMask) * (numRows + 1);
+    }
+
+    /**
+     * Returns the column of the first slot set in a word of a bitboard.
+     */
+    private int columnOf(int word, long bits)
+    {
+        return (word << wordShift) + Long.numberOfTrailingZeros(bits) / (numRows + 1);
+    }
+
+    /**
+     * Describes the first slot set in a word of a bitboard, as "column i, row j".
+     */
+    private String describeSlot(int word, long bits)
+    {
+        int index = Long.numberOfTrailingZeros(bits);
+        return "column " + columnOf(word, bits) + ", row " + (numRows - 1 - index % (numRows + 1));
+    }
+
+    /**
+     * Returns the bits of a bitboard word that are the bottom slot of their column.
+     */
+    private long bottomBitsOf(long bits)
+    {
+        long bottom = 0L;
+        while (bits != 0)
+        {
+            int index = Long.numberOfTrailingZeros(bits);
+            if (index % (numRows + 1) == 0)
+            {
+                bottom |= 1L << index;
+            }
+            bits &= bits - 1;
+        }
+        return bottom;
+    }
+
+    /**
+     * Checks for a line of at least winLength tokens of a color through the given slot. Counts
+     * the run of tokens going both ways from the slot in each of the four directions, stopping
+     * winLength - 1 slots away. The slot itself always counts, so this also tells if filling an
+     * empty slot would win. If highlight is true, the slots of the line found are highlighted.
+     */
+    private boolean winningLine(int column, int row, boolean red, boolean highlight)
+    {
+        if (filledBits.length == 1)
+        {
+            return winningLineInWord(column, row, red ? redBits[0] : filledBits[0] & ~redBits[0], highlight);
+        }
+        for (int direction = 0; direction < DIRECTION_COLS.length; direction++)
+        {
+            int dc = DIRECTION_COLS[direction];
+            int dr = DIRECTION_ROWS[direction];
+            int forward = run(column, row, dc, dr, red);
+            int backward = run(column, row, -dc, -dr, red);
+            if (forward + backward + 1 >= winLength)
+            {
+                for (int k = -backward; highlight && k <= forward; k++)
+                {
+                    highlightSlot(row + k * dr, column + k * dc);
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Does what winningLine() does on a board that takes a single word, by shifting the slot's
+     * bit along each line. A step off the board lands on a spare bit above a column, or beyond
+     * the last column, or off the end of the word, and those bits are never set in tokenBits.
+     */
+    private boolean winningLineInWord(int column, int row, long tokenBits, boolean highlight)
+    {
+        long slot = bit(column, row);
+        for (int direction = 0; direction < DIRECTION_COLS.length; direction++)
+        {
+            // the distance in bits between neighbouring slots of the line
+            int step = Math.abs(DIRECTION_COLS[direction] * (numRows + 1) - DIRECTION_ROWS[direction]);
+            long line = slot;
+            int length = 1;
+            long b = slot;
+            for (int k = 1; k < winLength && (tokenBits & (b <<= step)) != 0; k++)
+            {
+                line |= b;
+                length++;
+            }
+            b = slot;
+            for (int k = 1; k < winLength && (tokenBits & (b >>>= step)) != 0; k++)
+            {
+                line |= b;
+                length++;
+            }
+            if (length >= winLength)
+            {
+                if (highlight)
+                {
+                    highlightedBits[0] |= line;
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Counts the tokens of a color in a row from the slot next to the given one, going one way
+     * along a line, up to winLength - 1.
+     */
+    private int run(int column, int row, int dc, int dr, boolean red)
+    {
+        int length = 0;
+        int c = column + dc;
+        int r = row + dr;
+        while (length < winLength - 1 && c >= 0 && c < numCols && r >= 0 && r < numRows)
+        {
+            int word = c >>> wordShift;
+            long tokens = red ? redBits[word] : filledBits[word] & ~redBits[word];
+            if ((tokens & bit(c, r)) == 0)
+            {
+                break;
+            }
+            length++;
+            c += dc;
+            r += dr;
+        }
+        return length;
+    }
+
+    /**
+     * Returns the Zobrist key of a token of the given color in the slot of a bitboard bit.
+     */
+    private long zobristKey(int word, long bit, boolean red)
+    {
+        return zobristKeys[((word * Long.SIZE + Long.numberOfTrailingZeros(bit)) << 1) | (red ? 1 : 0)];
+    }
+
+    /**
+     * Returns the Zobrist keys for boards of the given number of words, making more if needed.
+     * The keys of the first word are those of ZOBRIST_KEYS, so a board's hash does not depend on
+     * how many words it takes.
+     */
+    private static synchronized long[] wideZobristKeys(int words)
+    {
+        int length = 2 * Long.SIZE * words;
+        if (wideZobristKeys.length < length)
+        {
+            long[] keys = Arrays.copyOf(wideZobristKeys, length);
+            for (int i = wideZobristKeys.length; i < length; i++)
+            {
+                keys[i] = mix(WIDE_ZOBRIST_SEED + i * 0x9E3779B97F4A7C15L);
+            }
+            wideZobristKeys = keys;
+        }
+        return wideZobristKeys;
+    }
+
+    /**
+     * Scrambles the bits of a number (the SplitMix64 finalizer).
+     */
+    private static long mix(long z)
+    {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Returns the row of a slot's bitboard bit.
+     */
+    private int rowOf(long bit)
+    {
+        return numRows - 1 - Long.numberOfTrailingZeros(bit) % (numRows + 1);
+    }
+
+    /**
+     * Returns a bitboard word with every slot of a column set, in the word that holds it.
+     */
+    private long columnMask(int column)
+    {
+        return ((1L << numRows) - 1) << shift(column);
+    }
+
+    /**
+     * Returns a bitboard word with the bottom slot of every column in it set.
+     */
+    private long bottomMask(int word)
+    {
+        long mask = 0L;
+        for (int i = word << wordShift; i < numCols && i >>> wordShift == word; i++)
+        {
+            mask |= bit(i, numRows - 1);
+        }
+        return mask;
+    }
+
+    /**
+     * Returns a bitboard word with every slot of every column in it set.
+     */
+    private long boardMask(int word)
+    {
+        long mask = 0L;
+        for (int i = word << wordShift; i < numCols && i >>> wordShift == word; i++)
+        {
+            mask |= columnMask(i);
+        }
+        return mask;
+    }
 }
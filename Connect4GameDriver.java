@@ -0,0 +1,422 @@
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.swing.SwingUtilities;
+
+/**
+ * Plays a game between two agents on a thread of its own, so the window stays responsive while
+ * the agents think.
+ * 
+ * Everything that touches the game, the agents' moves included, runs on the driver's one worker
+ * thread, in the order it was asked for. The window never reads the game itself: after every
+ * change the driver hands a copy of the board to its listener on the Swing event thread. When
+ * moves come faster than the event thread can show them, only the newest board is shown.
+ * 
+ * A game can be played one move at a time or to the end. Playing to the end can be paused
+ * after the move being made, slowed down with a delay between moves, or stopped altogether.
+ * 
+ * The game is played under a Connect4Clock, which has no limits unless one is set. Each move is
+ * made by a Connect4MoveExecutor, so a move that runs out of time is cancelled and loses the
+ * game for the agent that made it. Stopping the game cancels the move being made. The driver
+ * plays every game with the same board and agents, so a new game does not start until any
+ * cancelled move that went on running has finished. When a game ends, however it ends, both
+ * players are told with gameOver().
+ * 
+ * Each move is checked with Connect4Game.validateMove(), which compares the bitboards from before
+ * and after the move a word at a time, without looking at the slots one by one. Strict validation
+ * checks each move against a full copy of the board with validate() instead.
+ */
+public class Connect4GameDriver
+{
+    /**
+     * Receives the state of the game after each change, on the Swing event thread.
+     */
+    public interface Listener
+    {
+        /**
+         * Shows the state of the game.
+         * 
+         * @param position a copy of the board, which the listener may keep.
+         * @param status a description of what just happened, such as whose turn it is now.
+         * @param gameActive true if the game can go on.
+         * @param playing true if the driver is making moves, so no others should be asked for.
+         */
+        void gameChanged(Connect4Game position, String status, boolean gameActive, boolean playing);
+    }
+
+    // how often to say that a new game is waiting for a cancelled move to finish
+    private static final long WAIT_STATUS_MILLIS = 1000;
+
+    private final Connect4Game game;
+    private final Agent redPlayer;
+    private final Agent yellowPlayer;
+    private final Listener listener;
+    private final ExecutorService worker;
+    private final Connect4MoveExecutor mover = new Connect4MoveExecutor();
+    private volatile Connect4Clock timeControl = new Connect4Clock();
+    private volatile Connect4Clock clock = timeControl;     // the clock of the current game
+    private final AtomicReference<Update> pending = new AtomicReference<Update>();
+    // raised by every pause, stop and new game, so a run of moves stops once it sees a change
+    private final AtomicInteger runNumber = new AtomicInteger();
+    private volatile Thread workerThread;
+    private volatile long moveDelayMillis;
+    private volatile boolean strictValidation;
+    // only used on the worker thread
+    private boolean redPlayerTurn;
+    private boolean gameActive;
+
+    /**
+     * Creates a driver for a game and two players. No game is started until newGame() is called.
+     * 
+     * @param game the game to play.
+     * @param redPlayer the agent playing as the red tokens.
+     * @param yellowPlayer the agent playing as the yellow tokens.
+     * @param listener the listener to show the game with.
+     */
+    public Connect4GameDriver(Connect4Game game, Agent redPlayer, Agent yellowPlayer,
+        Listener listener)
+    {
+        this.game = game;
+        this.redPlayer = redPlayer;
+        this.yellowPlayer = yellowPlayer;
+        this.listener = listener;
+        this.worker = Executors.newSingleThreadExecutor(new ThreadFactory()
+        {
+            public Thread newThread(Runnable task)
+            {
+                Thread thread = new Thread(task, "Connect4GameDriver");
+                thread.setDaemon(true);
+                workerThread = thread;
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Stops any game being played, then clears the board and starts a new game. If a player's
+     * move was cancelled but is still running, the new game waits for it to finish.
+     * 
+     * @param redPlaysFirst true if red makes the first move.
+     */
+    public void newGame(final boolean redPlaysFirst)
+    {
+        stop();
+        worker.execute(new Runnable()
+        {
+            public void run()
+            {
+                if (!awaitAbandonedMoves())
+                {
+                    return;     // stopped while waiting
+                }
+                game.clearBoard();
+                game.setRedPlayedFirst(redPlaysFirst);
+                clock = timeControl.copy();
+                redPlayer.setClock(clock);
+                yellowPlayer.setClock(clock);
+                redPlayerTurn = redPlaysFirst;
+                gameActive = true;
+                publish((redPlaysFirst ? redPlayer : yellowPlayer).toString() + " plays first!",
+                    false);
+            }
+        });
+    }
+
+    /**
+     * Makes the next move of the game, if it is still going.
+     */
+    public void nextMove()
+    {
+        worker.execute(new Runnable()
+        {
+            public void run()
+            {
+                if (gameActive)
+                {
+                    publish(currentPlayer().toString() + " is thinking...", true);
+                    publish(playMove(), false);
+                }
+            }
+        });
+    }
+
+    /**
+     * Makes moves until the game ends, or until it is paused or stopped.
+     */
+    public void playToEnd()
+    {
+        final int run = runNumber.incrementAndGet();
+        worker.execute(new Runnable()
+        {
+            public void run()
+            {
+                while (gameActive && runNumber.get() == run)
+                {
+                    publish(currentPlayer().toString() + " is thinking...", true);
+                    String status = playMove();
+                    boolean more = gameActive && runNumber.get() == run;
+                    publish(status, more);
+                    if (more && moveDelayMillis > 0)
+                    {
+                        try
+                        {
+                            Thread.sleep(moveDelayMillis);
+                        }
+                        catch (InterruptedException e)
+                        {
+                            return;     // stopped; the stop shows the game
+                        }
+                        if (runNumber.get() != run)
+                        {
+                            publish(currentPlayer().toString() + " plays next...", false);
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Stops playing to the end once the move being made is done. The game can go on afterwards.
+     */
+    public void pause()
+    {
+        runNumber.incrementAndGet();
+    }
+
+    /**
+     * Ends the game being played. The move being made is cancelled.
+     */
+    public void stop()
+    {
+        runNumber.incrementAndGet();
+        Thread thread = workerThread;
+        if (thread != null)
+        {
+            thread.interrupt();
+        }
+        worker.execute(new Runnable()
+        {
+            public void run()
+            {
+                Thread.interrupted();   // the interrupt was for the task before this one
+                if (gameActive)
+                {
+                    endGame();
+                    publish("The game was stopped.", false);
+                }
+            }
+        });
+    }
+
+    /**
+     * Sets the time control of the games the driver plays, from the next new game on.
+     * 
+     * @param timeControl a clock with the time control; each game gets a copy of it.
+     */
+    public void setClock(Connect4Clock timeControl)
+    {
+        this.timeControl = timeControl;
+    }
+
+    /**
+     * Returns the clock of the game being played, to see how much time the players have left.
+     * 
+     * @return the clock.
+     */
+    public Connect4Clock getClock()
+    {
+        return clock;
+    }
+
+    /**
+     * Turns strict validation on or off. Strict validation copies the whole board before each
+     * move and compares every slot after it, which costs more but checks the fast validation.
+     * 
+     * @param strictValidation true to validate moves with validate().
+     */
+    public void setStrictValidation(boolean strictValidation)
+    {
+        this.strictValidation = strictValidation;
+    }
+
+    /**
+     * Sets how long to wait between moves when playing to the end, so people can follow them.
+     * 
+     * @param moveDelayMillis the delay, in milliseconds.
+     */
+    public void setMoveDelay(long moveDelayMillis)
+    {
+        this.moveDelayMillis = moveDelayMillis;
+    }
+
+    /**
+     * Returns how long the driver waits between moves when playing to the end.
+     * 
+     * @return the delay, in milliseconds.
+     */
+    public long getMoveDelay()
+    {
+        return moveDelayMillis;
+    }
+
+    /**
+     * Stops the game and the worker thread, and closes the players. The driver cannot be used
+     * afterwards.
+     */
+    public void shutdown()
+    {
+        runNumber.incrementAndGet();
+        worker.shutdownNow();
+        mover.shutdown();
+        redPlayer.close();
+        yellowPlayer.close();
+    }
+
+    /**
+     * Waits for the players' cancelled moves that are still running to finish, so they cannot
+     * change the board of a new game or run alongside the players' next moves.
+     * 
+     * @return true once no move is running, false if the driver was stopped while waiting.
+     */
+    private boolean awaitAbandonedMoves()
+    {
+        Agent[] players = {redPlayer, yellowPlayer};
+        try
+        {
+            for (Agent player : players)
+            {
+                while (!mover.awaitAbandoned(player, WAIT_STATUS_MILLIS))
+                {
+                    publish("Waiting for " + player.toString() + " to finish its last move...",
+                        false);
+                }
+            }
+        }
+        catch (InterruptedException e)
+        {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the agent whose turn it is.
+     */
+    private Agent currentPlayer()
+    {
+        return redPlayerTurn ? redPlayer : yellowPlayer;
+    }
+
+    /**
+     * Makes the move of the player whose turn it is, checks it, and decides whether the game is
+     * over. Running out of time loses the game; crashing ends it like an invalid move.
+     * 
+     * @return a description of what happened.
+     */
+    private String playMove()
+    {
+        // store the old board for validation: the whole board in strict mode, the bitboards otherwise
+        Connect4Game oldBoard = strictValidation ? new Connect4Game(game) : null;
+        long[] filledBefore = game.getFilledWords();
+        long[] redBefore = game.getRedWords();
+        Agent player = currentPlayer();
+        Agent opponent = redPlayerTurn ? yellowPlayer : redPlayer;
+        String error = mover.move(player, clock);
+        if (Thread.currentThread().isInterrupted())
+        {
+            return error;   // the game is being stopped
+        }
+        redPlayerTurn = !redPlayerTurn;
+        if (clock.hasTimedOut(player.iAmRed))
+        {
+            endGame();
+            return error + " " + opponent.toString() + " wins!";
+        }
+        String status = opponent.toString() + " plays next...";
+        String validateResult = error;
+        if (validateResult.length() == 0)
+        {
+            validateResult = oldBoard != null ? oldBoard.validate(game)
+                : game.validateMove(filledBefore, redBefore);
+        }
+        char won;   // after an invalid move the whole board must be scanned
+        if (validateResult.length() > 0)
+        {
+            status = validateResult;
+            gameActive = false;
+            won = game.gameWon();
+        }
+        else
+        {
+            won = game.gameWonByLastMove();
+        }
+        if (won != 'N')
+        {
+            gameActive = false;
+            status = (won == 'R' ? redPlayer : yellowPlayer).toString() + " wins!";
+        }
+        else if (game.boardFull())
+        {
+            gameActive = false;
+            status = "The game ended in a draw!";
+        }
+        if (!gameActive)
+        {
+            endGame();
+        }
+        return status;
+    }
+
+    /**
+     * Ends the game, and tells the players it is over.
+     */
+    private void endGame()
+    {
+        gameActive = false;
+        redPlayer.gameOver();
+        yellowPlayer.gameOver();
+    }
+
+    /**
+     * Hands a copy of the board to the listener on the event thread. If the listener has not
+     * been given the last copy yet, this one replaces it.
+     */
+    private void publish(String status, boolean playing)
+    {
+        Update update = new Update(new Connect4Game(game), status, gameActive, playing);
+        if (pending.getAndSet(update) == null)
+        {
+            SwingUtilities.invokeLater(new Runnable()
+            {
+                public void run()
+                {
+                    Update latest = pending.getAndSet(null);
+                    listener.gameChanged(latest.position, latest.status, latest.gameActive,
+                        latest.playing);
+                }
+            });
+        }
+    }
+
+    /**
+     * The state of the game waiting to be shown.
+     */
+    private static class Update
+    {
+        final Connect4Game position;
+        final String status;
+        final boolean gameActive;
+        final boolean playing;
+
+        Update(Connect4Game position, String status, boolean gameActive, boolean playing)
+        {
+            this.position = position;
+            this.status = status;
+            this.gameActive = gameActive;
+            this.playing = playing;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * A Connect4Search that runs helper threads alongside it on the same position (Lazy SMP).
+ * 
+ * The helpers do not split the work up. Each one searches the whole position on its own, and
+ * the only thing the threads share is the transposition table, which needs no locks. What one
+ * thread stores, the others find, so they skip positions already searched and reuse the best
+ * moves found. Helpers are made to differ so they do not all search the same positions in the
+ * same order: every other helper searches one move deeper at each iteration, and each helper
+ * starts with the root moves in a different order.
+ * 
+ * The calling thread runs the normal iterative deepening search and decides the move; the
+ * helpers are stopped as soon as it is done. Unlike root splitting, this keeps every thread busy
+ * even near the end of the game, when there are only a few columns left to play.
+ */
+public class Connect4LazySmpSearch extends Connect4Search
+{
+    private final ForkJoinPool pool;        // null when there are no helpers
+    private final Connect4Search[] helpers;
+    private long[] threadNodeCounts = new long[0];
+
+    /**
+     * Creates a search with its own transposition table of DEFAULT_TABLE_CAPACITY entries.
+     * 
+     * @param threadCount the number of threads to search with, counting the calling thread.
+     */
+    public Connect4LazySmpSearch(int threadCount)
+    {
+        this(new Connect4TranspositionTable(DEFAULT_TABLE_CAPACITY), threadCount);
+    }
+
+    /**
+     * Creates a search whose threads all use the given transposition table.
+     * 
+     * @param table the table to share; not null, since the threads work together through it.
+     * @param threadCount the number of threads to search with, counting the calling thread.
+     */
+    public Connect4LazySmpSearch(Connect4TranspositionTable table, int threadCount)
+    {
+        super(table);
+        if (table == null)
+        {
+            throw new IllegalArgumentException("Lazy SMP needs a transposition table to share.");
+        }
+        if (threadCount < 1)
+        {
+            throw new IllegalArgumentException("A search needs at least one thread.");
+        }
+        helpers = new Connect4Search[threadCount - 1];
+        pool = helpers.length > 0 ? new ForkJoinPool(helpers.length) : null;
+        for (int i = 0; i < helpers.length; i++)
+        {
+            helpers[i] = new Helper(table);
+        }
+    }
+
+    /**
+     * Stops the helpers' threads. The search cannot be used afterwards.
+     */
+    public void shutdown()
+    {
+        if (pool != null)
+        {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns the number of threads the search uses, counting the calling thread.
+     * 
+     * @return the thread count.
+     */
+    public int getThreadCount()
+    {
+        return helpers.length + 1;
+    }
+
+    /**
+     * Returns the number of positions each thread visited in the last search. getNodeCount()
+     * returns their total.
+     * 
+     * @return the node counts; the first is the calling thread's, the rest the helpers'.
+     */
+    public long[] getThreadNodeCounts()
+    {
+        return threadNodeCounts.clone();
+    }
+
+    /**
+     * Returns the node counts of getThreadNodeCounts() for the metrics.
+     */
+    long[] threadNodeCounts()
+    {
+        return getThreadNodeCounts();
+    }
+
+    /**
+     * Searches the game on the calling thread, while the helpers search the same game until the
+     * calling thread is done, and then adds the helpers' counts to the search's.
+     */
+    int searchPosition(Connect4Game game, int maxDepth, long timeLimitMillis, long start)
+    {
+        int emptySlots = game.getColumnCount() * game.getRowCount() - game.getMoveCount();
+        final int depthLimit = Math.min(maxDepth, emptySlots);
+        List<Future<Void>> running = new ArrayList<Future<Void>>();
+        for (int i = 0; i < helpers.length; i++)
+        {
+            final Connect4Search helper = helpers[i];
+            final Connect4Game copy = new Connect4Game(game);
+            final int index = i;
+            helper.setMoveOrdering(new Connect4MoveOrdering(getMoveOrdering()));
+            helper.prepare(copy);
+            running.add(pool.submit(new Callable<Void>()
+            {
+                public Void call()
+                {
+                    runHelper(helper, copy, index, depthLimit);
+                    return null;
+                }
+            }));
+        }
+
+        int column = super.searchPosition(game, maxDepth, timeLimitMillis, start);
+
+        for (Connect4Search helper : helpers)
+        {
+            helper.stop();
+        }
+        threadNodeCounts = new long[helpers.length + 1];
+        threadNodeCounts[0] = getNodeCount();
+        for (int i = 0; i < helpers.length; i++)
+        {
+            try
+            {
+                running.get(i).get();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+            catch (ExecutionException e)
+            {
+                throw new IllegalStateException("A search helper failed.", e.getCause());
+            }
+            threadNodeCounts[i + 1] = takeCounts(helpers[i]);
+        }
+        return column;
+    }
+
+    /**
+     * Searches a position deeper and deeper until the helper is stopped or reaches the depth
+     * limit. Odd helpers start one move deeper, and each helper rotates the root moves by its
+     * index before the first iteration.
+     */
+    private static void runHelper(Connect4Search helper, Connect4Game game, int index, int maxDepth)
+    {
+        int columns = game.getColumnCount();
+        int[] order = new int[columns];
+        int[] scores = new int[columns];
+        int moves = helper.getMoveOrdering().orderMoves(game, 0, -1, order);
+        int[] rotated = new int[moves];
+        for (int i = 0; i < moves; i++)
+        {
+            rotated[i] = order[(i + index) % moves];
+        }
+        System.arraycopy(rotated, 0, order, 0, moves);
+        for (int depth = 1 + (index & 1); depth <= maxDepth && !helper.isTimeUp(); depth++)
+        {
+            helper.searchRoot(game, depth, order, scores, moves);
+        }
+    }
+
+    /**
+     * A search run by one helper thread, scoring positions with the evaluate() of the search it
+     * helps.
+     */
+    private class Helper extends Connect4Search
+    {
+        Helper(Connect4TranspositionTable table)
+        {
+            super(table, false);    // only the calling thread solves
+        }
+
+        protected int evaluate(Connect4Game game)
+        {
+            return Connect4LazySmpSearch.this.evaluate(game);
+        }
+    }
+}
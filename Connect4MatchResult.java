@@ -0,0 +1,217 @@
+/**
+ * The results of a match between two agents, as played by Connect4MatchRunner: the games won,
+ * lost and drawn, and how long the agents took over their moves.
+ * 
+ * Results are counted from the point of view of the first agent of the match. Games are added
+ * as they finish, from whichever thread played them.
+ */
+public class Connect4MatchResult
+{
+    /**
+     * The first agent of the match.
+     */
+    public static final int FIRST = 0;
+    /**
+     * The second agent of the match.
+     */
+    public static final int SECOND = 1;
+    /**
+     * Neither agent: the game was drawn.
+     */
+    public static final int NONE = -1;
+
+    private int[] wins = new int[2];
+    private int[] forfeits = new int[2];    // games lost by an invalid move, a crash or the clock
+    private int[] timeouts = new int[2];    // games lost by the clock
+    private int draws;
+    private long[] moveCounts = new long[2];
+    private long[] moveNanos = new long[2];
+    private long[] maxMoveNanos = new long[2];
+
+    /**
+     * Adds a finished game.
+     * 
+     * @param winner FIRST, SECOND or NONE.
+     * @param forfeit true if the loser lost by an invalid move, a crash or running out of time.
+     * @param timeout true if the loser ran out of time.
+     * @param counts the number of moves each agent made, indexed by FIRST and SECOND.
+     * @param nanos the total time each agent took over its moves, in nanoseconds.
+     * @param maxNanos the longest time each agent took over a move, in nanoseconds.
+     */
+    synchronized void addGame(int winner, boolean forfeit, boolean timeout, long[] counts,
+        long[] nanos, long[] maxNanos)
+    {
+        if (winner == NONE)
+        {
+            draws++;
+        }
+        else
+        {
+            wins[winner]++;
+            if (forfeit || timeout)
+            {
+                forfeits[1 - winner]++;
+            }
+            if (timeout)
+            {
+                timeouts[1 - winner]++;
+            }
+        }
+        for (int i = 0; i < 2; i++)
+        {
+            moveCounts[i] += counts[i];
+            moveNanos[i] += nanos[i];
+            maxMoveNanos[i] = Math.max(maxMoveNanos[i], maxNanos[i]);
+        }
+    }
+
+    /**
+     * Adds every game of another result to this one.
+     * 
+     * @param other the result to add; the same two agents must be first and second in it.
+     */
+    void addAll(Connect4MatchResult other)
+    {
+        int[] otherWins;
+        int[] otherForfeits;
+        int[] otherTimeouts;
+        int otherDraws;
+        long[] counts;
+        long[] nanos;
+        long[] maxNanos;
+        synchronized (other)
+        {
+            otherWins = other.wins.clone();
+            otherForfeits = other.forfeits.clone();
+            otherTimeouts = other.timeouts.clone();
+            otherDraws = other.draws;
+            counts = other.moveCounts.clone();
+            nanos = other.moveNanos.clone();
+            maxNanos = other.maxMoveNanos.clone();
+        }
+        synchronized (this)
+        {
+            for (int i = 0; i < 2; i++)
+            {
+                wins[i] += otherWins[i];
+                forfeits[i] += otherForfeits[i];
+                timeouts[i] += otherTimeouts[i];
+                moveCounts[i] += counts[i];
+                moveNanos[i] += nanos[i];
+                maxMoveNanos[i] = Math.max(maxMoveNanos[i], maxNanos[i]);
+            }
+            draws += otherDraws;
+        }
+    }
+
+    /**
+     * Returns the number of games played.
+     * 
+     * @return the number of games.
+     */
+    public synchronized int getGameCount()
+    {
+        return wins[FIRST] + wins[SECOND] + draws;
+    }
+
+    /**
+     * Returns the number of games the first agent won.
+     * 
+     * @return the number of wins.
+     */
+    public synchronized int getWins()
+    {
+        return wins[FIRST];
+    }
+
+    /**
+     * Returns the number of games the first agent lost.
+     * 
+     * @return the number of losses.
+     */
+    public synchronized int getLosses()
+    {
+        return wins[SECOND];
+    }
+
+    /**
+     * Returns the number of games drawn.
+     * 
+     * @return the number of draws.
+     */
+    public synchronized int getDraws()
+    {
+        return draws;
+    }
+
+    /**
+     * Returns the number of games an agent lost by making an invalid move, crashing or running
+     * out of time.
+     * 
+     * @param agent FIRST or SECOND.
+     * @return the number of forfeits.
+     */
+    public synchronized int getForfeits(int agent)
+    {
+        return forfeits[agent];
+    }
+
+    /**
+     * Returns the number of games an agent lost by running out of time.
+     * 
+     * @param agent FIRST or SECOND.
+     * @return the number of timeouts.
+     */
+    public synchronized int getTimeouts(int agent)
+    {
+        return timeouts[agent];
+    }
+
+    /**
+     * Returns the number of moves an agent made.
+     * 
+     * @param agent FIRST or SECOND.
+     * @return the number of moves.
+     */
+    public synchronized long getMoveCount(int agent)
+    {
+        return moveCounts[agent];
+    }
+
+    /**
+     * Returns the average time an agent took over a move.
+     * 
+     * @param agent FIRST or SECOND.
+     * @return the average time per move, in milliseconds; 0 if it made no moves.
+     */
+    public synchronized double getAverageMoveMillis(int agent)
+    {
+        return moveCounts[agent] == 0 ? 0.0 : moveNanos[agent] / 1e6 / moveCounts[agent];
+    }
+
+    /**
+     * Returns the longest time an agent took over a move.
+     * 
+     * @param agent FIRST or SECOND.
+     * @return the longest time, in milliseconds.
+     */
+    public synchronized double getMaxMoveMillis(int agent)
+    {
+        return maxMoveNanos[agent] / 1e6;
+    }
+
+    /**
+     * Describes the results.
+     * 
+     * @return the results, from the first agent's point of view, and the timing of both agents.
+     */
+    public synchronized String toString()
+    {
+        return String.format("%d games: %d wins, %d losses, %d draws (forfeits %d/%d, "
+            + "timeouts %d/%d); ms per move %.2f/%.2f, max %.2f/%.2f",
+            getGameCount(), wins[FIRST], wins[SECOND], draws, forfeits[FIRST], forfeits[SECOND],
+            timeouts[FIRST], timeouts[SECOND],
+            getAverageMoveMillis(FIRST), getAverageMoveMillis(SECOND),
+            getMaxMoveMillis(FIRST), getMaxMoveMillis(SECOND));
+    }
+}
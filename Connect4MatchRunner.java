@@ -0,0 +1,369 @@
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Plays matches between two agents without a window, many games at a time:
+ *     java Connect4MatchRunner FirstAgentClass SecondAgentClass games [threads] [columns rows]
+ *         [move-millis] [win-length] [search-threads] [root|smp]
+ * 
+ * Every game gets a fresh pair of agents from the factories and is played on a thread pool, by
+ * the same rules as Connect4Frame: each move is validated, and an invalid move ends the game.
+ * Here it also loses the game for the agent that made it, as does throwing an exception or
+ * running out of time on the game's Connect4Clock, which has no limits unless one is set. The
+ * agents take turns playing red, and red and yellow take turns moving first, so over every four
+ * games each agent plays each color once moving first and once moving second.
+ * 
+ * Agents that search on several threads of their own compete with the other games for the
+ * processors. Agent classes with a constructor that also takes a thread count are given
+ * searchThreadsFor() threads from the command line, a single one when a game is played per
+ * processor, unless the count is given; MyAgent splits the root moves between its threads, or
+ * searches with Lazy SMP if smp is given. Each agent is closed once its game is over.
+ */
+public class Connect4MatchRunner
+{
+    private final Connect4AgentFactory first;
+    private final Connect4AgentFactory second;
+    private final int numCols;
+    private final int numRows;
+    private int winLength = Connect4Game.DEFAULT_WIN_LENGTH;
+    private int threadCount = Runtime.getRuntime().availableProcessors();
+    private Connect4Clock timeControl = new Connect4Clock();
+    private boolean strictValidation;
+
+    /**
+     * Creates a runner for matches between two agents.
+     * 
+     * @param first creates the first agent, from whose point of view results are counted.
+     * @param second creates the second agent.
+     * @param columns the number of columns of the board.
+     * @param rows the number of rows of the board.
+     */
+    public Connect4MatchRunner(Connect4AgentFactory first, Connect4AgentFactory second,
+        int columns, int rows)
+    {
+        this.first = first;
+        this.second = second;
+        this.numCols = columns;
+        this.numRows = rows;
+    }
+
+    /**
+     * Sets the number of tokens in a line that wins a game. The default is four.
+     * 
+     * @param winLength the win length, from 2 to 64.
+     */
+    public void setWinLength(int winLength)
+    {
+        this.winLength = winLength;
+    }
+
+    /**
+     * Sets the number of games played at the same time. The default is one per processor.
+     * 
+     * @param threadCount the number of threads to play games on, at least 1.
+     */
+    public void setThreadCount(int threadCount)
+    {
+        if (threadCount < 1)
+        {
+            throw new IllegalArgumentException("A match needs at least one thread.");
+        }
+        this.threadCount = threadCount;
+    }
+
+    /**
+     * Sets the time control of the games. Each game gets a copy of the clock.
+     * 
+     * @param timeControl a clock with the time control.
+     */
+    public void setClock(Connect4Clock timeControl)
+    {
+        this.timeControl = timeControl;
+    }
+
+    /**
+     * Turns strict validation on or off. Moves are normally checked with
+     * Connect4Game.validateMove(), from the bitboards; strict validation copies the board before
+     * every move and checks it with validate() instead.
+     * 
+     * @param strictValidation true to validate moves with validate().
+     */
+    public void setStrictValidation(boolean strictValidation)
+    {
+        this.strictValidation = strictValidation;
+    }
+
+    /**
+     * Plays a match and waits for every game to finish.
+     * 
+     * @param games the number of games to play.
+     * @return the results of the match.
+     */
+    public Connect4MatchResult play(int games)
+    {
+        final Connect4MatchResult result = new Connect4MatchResult();
+        final Connect4MoveExecutor mover = new Connect4MoveExecutor();
+        ExecutorService pool = Executors.newFixedThreadPool(threadCount);
+        try
+        {
+            List<Future<Void>> running = new ArrayList<Future<Void>>();
+            for (int i = 0; i < games; i++)
+            {
+                final int index = i;
+                running.add(pool.submit(new Callable<Void>()
+                {
+                    public Void call()
+                    {
+                        playGame(index, mover, result);
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> game : running)
+            {
+                game.get();
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        catch (ExecutionException e)
+        {
+            throw new IllegalStateException("A game could not be played.", e.getCause());
+        }
+        finally
+        {
+            pool.shutdownNow();
+            mover.shutdown();
+        }
+        return result;
+    }
+
+    /**
+     * Plays one game of a match and adds it to the results.
+     * 
+     * @param index the number of the game in the match, which decides the colors and who
+     *        moves first.
+     * @param mover makes the agents' moves under the game's clock.
+     * @param result the results to add the game to.
+     */
+    private void playGame(int index, Connect4MoveExecutor mover, Connect4MatchResult result)
+    {
+        Connect4Game game = new Connect4Game(numCols, numRows, winLength);
+        boolean firstIsRed = (index & 1) == 0;
+        boolean redTurn = (index & 2) == 0;
+        game.setRedPlayedFirst(redTurn);
+        Agent red = (firstIsRed ? first : second).createAgent(game, true);
+        Agent yellow = (firstIsRed ? second : first).createAgent(game, false);
+        Connect4Clock clock = timeControl.copy();
+        red.setClock(clock);
+        yellow.setClock(clock);
+
+        long[] counts = new long[2];
+        long[] nanos = new long[2];
+        long[] maxNanos = new long[2];
+        int winner;
+        boolean forfeit = false;
+        boolean timeout = false;
+        while (true)
+        {
+            int player = redTurn == firstIsRed ? Connect4MatchResult.FIRST : Connect4MatchResult.SECOND;
+            Connect4Game oldBoard = strictValidation ? new Connect4Game(game) : null;
+            long[] filledBefore = game.getFilledWords();
+            long[] redBefore = game.getRedWords();
+            long start = System.nanoTime();
+            String error = mover.move(redTurn ? red : yellow, clock);
+            long time = System.nanoTime() - start;
+            if (error.length() == 0)
+            {
+                error = oldBoard != null ? oldBoard.validate(game)
+                    : game.validateMove(filledBefore, redBefore);
+            }
+            counts[player]++;
+            nanos[player] += time;
+            maxNanos[player] = Math.max(maxNanos[player], time);
+
+            if (error.length() > 0)
+            {
+                winner = 1 - player;
+                forfeit = true;
+                timeout = clock.hasTimedOut(redTurn);
+                break;
+            }
+            char won = game.gameWonByLastMove();
+            if (won != 'N')
+            {
+                winner = (won == 'R') == firstIsRed ? Connect4MatchResult.FIRST : Connect4MatchResult.SECOND;
+                break;
+            }
+            if (game.boardFull())
+            {
+                winner = Connect4MatchResult.NONE;
+                break;
+            }
+            redTurn = !redTurn;
+        }
+        red.close();
+        yellow.close();
+        result.addGame(winner, forfeit, timeout, counts, nanos, maxNanos);
+    }
+
+    /**
+     * Returns a factory for an agent class with the usual constructor, taking the game and
+     * whether the agent is red.
+     * 
+     * @param type the agent class.
+     * @return a factory that creates agents of that class.
+     */
+    public static Connect4AgentFactory factoryFor(Class<? extends Agent> type)
+    {
+        try
+        {
+            return factoryFor(type.getConstructor(Connect4Game.class, boolean.class));
+        }
+        catch (NoSuchMethodException e)
+        {
+            throw new IllegalArgumentException(type.getName()
+                + " has no constructor taking a Connect4Game and a boolean.");
+        }
+    }
+
+    /**
+     * Returns a factory for an agent class that searches on the given number of threads, through
+     * a constructor taking the game, whether the agent is red, and the thread count. A class
+     * without such a constructor is made with the usual one, and chooses its own threads.
+     * 
+     * @param type the agent class.
+     * @param searchThreads the number of threads each agent searches on, at least 1.
+     * @return a factory that creates agents of that class.
+     */
+    public static Connect4AgentFactory factoryFor(Class<? extends Agent> type, int searchThreads)
+    {
+        try
+        {
+            return factoryFor(type.getConstructor(Connect4Game.class, boolean.class, int.class),
+                searchThreads);
+        }
+        catch (NoSuchMethodException e)
+        {
+            return factoryFor(type);
+        }
+    }
+
+    /**
+     * Returns a factory for an agent class that searches on the given number of threads, with
+     * Lazy SMP or by splitting the root moves between them. The class needs a constructor that
+     * also takes a boolean, true for Lazy SMP, after the thread count, as MyAgent has; a class
+     * without one is made as by factoryFor(type, searchThreads).
+     * 
+     * @param type the agent class.
+     * @param searchThreads the number of threads each agent searches on, at least 1.
+     * @param lazySmp true to search with Lazy SMP, false to split the root moves.
+     * @return a factory that creates agents of that class.
+     */
+    public static Connect4AgentFactory factoryFor(Class<? extends Agent> type, int searchThreads,
+        boolean lazySmp)
+    {
+        try
+        {
+            return factoryFor(type.getConstructor(Connect4Game.class, boolean.class, int.class,
+                boolean.class), searchThreads, lazySmp);
+        }
+        catch (NoSuchMethodException e)
+        {
+            return factoryFor(type, searchThreads);
+        }
+    }
+
+    /**
+     * Returns a factory that calls an agent constructor with the game, whether the agent is red,
+     * and the given arguments.
+     */
+    private static Connect4AgentFactory factoryFor(final Constructor<? extends Agent> constructor,
+        final Object... arguments)
+    {
+        return new Connect4AgentFactory()
+        {
+            public Agent createAgent(Connect4Game game, boolean iAmRed)
+            {
+                Object[] values = new Object[arguments.length + 2];
+                values[0] = game;
+                values[1] = iAmRed;
+                System.arraycopy(arguments, 0, values, 2, arguments.length);
+                try
+                {
+                    return constructor.newInstance(values);
+                }
+                catch (ReflectiveOperationException e)
+                {
+                    throw new IllegalStateException("Could not create a "
+                        + constructor.getDeclaringClass().getName() + ".", e);
+                }
+            }
+        };
+    }
+
+    /**
+     * Returns how many threads each agent should search on when the given number of games are
+     * played at the same time: the processors shared out between the games, and so a single
+     * thread once there is a game per processor. Only the agent to move searches, unless it
+     * ponders.
+     * 
+     * @param threadCount the number of games played at the same time.
+     * @return the number of search threads per agent, at least 1.
+     */
+    public static int searchThreadsFor(int threadCount)
+    {
+        return Math.max(1, Runtime.getRuntime().availableProcessors() / threadCount);
+    }
+
+    /**
+     * Plays a match between two agent classes and prints the results.
+     * 
+     * @param args the two agent classes, the number of games, then optionally the number of
+     *        threads, the number of columns and rows of the board, the time limit per move in
+     *        milliseconds, the number of tokens in a line that wins, the number of threads each
+     *        agent searches on, and root or smp for how the agents share out their search.
+     * @throws ClassNotFoundException if an agent class cannot be found.
+     */
+    public static void main(String[] args) throws ClassNotFoundException
+    {
+        if (args.length < 3)
+        {
+            System.out.println("Usage: java Connect4MatchRunner FirstAgentClass SecondAgentClass "
+                + "games [threads] [columns rows] [move-millis] [win-length] [search-threads] [root|smp]");
+            return;
+        }
+        Class<? extends Agent> firstType = Class.forName(args[0]).asSubclass(Agent.class);
+        Class<? extends Agent> secondType = Class.forName(args[1]).asSubclass(Agent.class);
+        int games = Integer.parseInt(args[2]);
+        int columns = args.length > 5 ? Integer.parseInt(args[4]) : 7;
+        int rows = args.length > 5 ? Integer.parseInt(args[5]) : 6;
+        int threads = args.length > 3 ? Integer.parseInt(args[3])
+            : Runtime.getRuntime().availableProcessors();
+        int searchThreads = args.length > 8 ? Integer.parseInt(args[8]) : searchThreadsFor(threads);
+        boolean lazySmp = args.length > 9 && args[9].equalsIgnoreCase("smp");
+
+        Connect4MatchRunner runner = new Connect4MatchRunner(
+            factoryFor(firstType, searchThreads, lazySmp),
+            factoryFor(secondType, searchThreads, lazySmp), columns, rows);
+        runner.setThreadCount(threads);
+        if (args.length > 6)
+        {
+            runner.setClock(Connect4Clock.fixedTime(Long.parseLong(args[6])));
+        }
+        if (args.length > 7)
+        {
+            runner.setWinLength(Integer.parseInt(args[7]));
+        }
+        Connect4MatchResult result = runner.play(games);
+        System.out.println(args[0] + " vs. " + args[1] + ": " + result);
+    }
+}
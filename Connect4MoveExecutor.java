@@ -0,0 +1,180 @@
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs agents' moves under a Connect4Clock, each as a task that can be cancelled.
+ * 
+ * The move runs on a thread of the executor while the calling thread waits, for no longer than
+ * the clock allows. A move that runs out of time is cancelled, which interrupts the agent's
+ * thread, and the agent loses. Java cannot stop a thread that will not stop, so an agent that
+ * ignores the interrupt is given a short grace period to finish, and then left to run on its
+ * own; whatever it does to the board afterwards is no longer part of the game.
+ * 
+ * A move left running that way is abandoned. Until it finishes, its agent and game must not be
+ * used again: the move would change the board of the next game, and the agent would be making
+ * two moves at once. awaitAbandoned() waits for it.
+ */
+public class Connect4MoveExecutor
+{
+    // how long a cancelled move is given to notice the interrupt
+    private static final long GRACE_MILLIS = 1000;
+
+    private final ExecutorService threads;
+    // the moves that were cancelled but did not stop, by agent
+    private final ConcurrentMap<Agent, CountDownLatch> abandoned =
+        new ConcurrentHashMap<Agent, CountDownLatch>();
+
+    /**
+     * Creates an executor. Its threads are daemon threads, created as needed and reused.
+     */
+    public Connect4MoveExecutor()
+    {
+        threads = Executors.newCachedThreadPool(new ThreadFactory()
+        {
+            public Thread newThread(Runnable task)
+            {
+                Thread thread = new Thread(task, "Connect4MoveExecutor");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Has an agent make its move, timed by the game's clock, and waits for it. Any number of
+     * threads can have moves made at the same time.
+     * 
+     * If the move ran out of time, the clock says so: hasTimedOut() is true for the agent. If the
+     * calling thread was interrupted, the move is cancelled and the thread is left interrupted;
+     * the clock is stopped first, so the agent is not charged for the wait for it to stop.
+     * 
+     * @param agent the agent to move.
+     * @param clock the clock of the game, which is started and stopped for the move.
+     * @return an empty string if the move was made in time without an exception; otherwise, a
+     *         description of what went wrong.
+     */
+    public String move(final Agent agent, Connect4Clock clock)
+    {
+        final CountDownLatch finished = new CountDownLatch(1);
+        clock.startMove(agent.iAmRed);
+        Future<?> task = threads.submit(new Runnable()
+        {
+            public void run()
+            {
+                try
+                {
+                    agent.move();
+                }
+                finally
+                {
+                    finished.countDown();
+                }
+            }
+        });
+        long limit = clock.getRemainingMoveMillis(agent.iAmRed);
+        String error = "";
+        boolean running = false;
+        boolean interrupted = false;
+        try
+        {
+            if (limit == Connect4Clock.UNLIMITED)
+            {
+                task.get();
+            }
+            else
+            {
+                // a millisecond more than the clock allows, so the clock agrees the time is up
+                task.get(limit + 1, TimeUnit.MILLISECONDS);
+            }
+        }
+        catch (TimeoutException e)
+        {
+            running = true;
+        }
+        catch (InterruptedException e)
+        {
+            running = true;
+            interrupted = true;
+        }
+        catch (ExecutionException e)
+        {
+            error = agent.toString() + " failed: " + e.getCause();
+        }
+        boolean inTime = clock.stopMove();
+        if (running)
+        {
+            cancel(agent, task, finished);
+        }
+        if (interrupted)
+        {
+            Thread.currentThread().interrupt();
+            return agent.toString() + "'s move was cancelled.";
+        }
+        if (!inTime)
+        {
+            error = agent.toString() + " ran out of time.";
+        }
+        return error;
+    }
+
+    /**
+     * Waits for an agent's abandoned move, if it has one, to finish. Until this returns true,
+     * the agent and its game must not be used again.
+     * 
+     * @param agent the agent.
+     * @param timeoutMillis the longest time to wait, in milliseconds.
+     * @return true if the agent has no move running, false if the time ran out first.
+     * @throws InterruptedException if the calling thread was interrupted while waiting.
+     */
+    public boolean awaitAbandoned(Agent agent, long timeoutMillis) throws InterruptedException
+    {
+        CountDownLatch finished = abandoned.get(agent);
+        if (finished == null)
+        {
+            return true;
+        }
+        if (!finished.await(timeoutMillis, TimeUnit.MILLISECONDS))
+        {
+            return false;
+        }
+        abandoned.remove(agent, finished);
+        return true;
+    }
+
+    /**
+     * Stops the executor's threads. Moves still running are interrupted.
+     */
+    public void shutdown()
+    {
+        threads.shutdownNow();
+    }
+
+    /**
+     * Cancels a move and gives it a short time to notice. A move still running after that is
+     * abandoned.
+     */
+    private void cancel(Agent agent, Future<?> task, CountDownLatch finished)
+    {
+        task.cancel(true);
+        try
+        {
+            finished.await(GRACE_MILLIS, TimeUnit.MILLISECONDS);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        if (finished.getCount() > 0)
+        {
+            abandoned.put(agent, finished);
+        }
+    }
+}
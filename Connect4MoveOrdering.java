@@ -0,0 +1,287 @@
+/**
+ * Decides the order in which Connect4Search tries the moves of a position.
+ * 
+ * Alpha-beta pruning cuts off the most when the best move is tried first, so a good order can
+ * save most of the work of a search. The order combines, from strongest to weakest:
+ * - the best move stored in the transposition table for the position;
+ * - killer moves: moves that caused a cutoff at the same depth of the tree elsewhere;
+ * - the history table: how often, and how deep, each move has caused cutoffs so far;
+ * - a static order that tries the center columns first, since they take part in the most lines.
+ * Each heuristic can be turned on or off, and subclasses can change how moves are scored.
+ * Killer moves start off: they make the first move tried cause more of the cutoffs, but the
+ * search still visits about as many positions, and takes longer doing it.
+ * 
+ * The ordering also counts how often the first move tried causes a cutoff, which shows how
+ * well it is working.
+ */
+public class Connect4MoveOrdering
+{
+    // move scores, so each heuristic outranks the ones after it
+    private static final int TABLE_MOVE_SCORE = 1 << 30;
+    private static final int KILLER_SCORE = 1 << 29;
+    private static final int HISTORY_LIMIT = 1 << 28;
+
+    private boolean useTableMove = true;
+    private boolean useKillers = false;
+    private boolean useHistory = true;
+    private boolean useCenterOrder = true;
+
+    private int[][] killers = new int[0][];     // two killer columns per ply
+    private int[][] history = new int[2][0];    // per player, per slot
+    private int[] scores = new int[0];          // scratch space for sorting
+    private long cutoffs;
+    private long firstMoveCutoffs;
+
+    /**
+     * Creates an ordering that uses the table move, the history table and the center-first order.
+     */
+    public Connect4MoveOrdering()
+    {
+    }
+
+    /**
+     * Creates an ordering with the same heuristics turned on as another. What the other has
+     * learned, its killer moves and history, is not copied.
+     * 
+     * @param ordering the ordering to copy the settings of.
+     */
+    public Connect4MoveOrdering(Connect4MoveOrdering ordering)
+    {
+        this.useTableMove = ordering.useTableMove;
+        this.useKillers = ordering.useKillers;
+        this.useHistory = ordering.useHistory;
+        this.useCenterOrder = ordering.useCenterOrder;
+    }
+
+    /**
+     * Turns the use of the transposition table's best move on or off.
+     * 
+     * @param useTableMove true to try the stored best move first.
+     */
+    public void setUseTableMove(boolean useTableMove)
+    {
+        this.useTableMove = useTableMove;
+    }
+
+    /**
+     * Turns killer moves on or off.
+     * 
+     * @param useKillers true to try killer moves early.
+     */
+    public void setUseKillers(boolean useKillers)
+    {
+        this.useKillers = useKillers;
+    }
+
+    /**
+     * Turns the history table on or off.
+     * 
+     * @param useHistory true to order moves by their history of cutoffs.
+     */
+    public void setUseHistory(boolean useHistory)
+    {
+        this.useHistory = useHistory;
+    }
+
+    /**
+     * Turns center-first ordering on or off. When off, columns are tried left to right.
+     * 
+     * @param useCenterOrder true to try the center columns first.
+     */
+    public void setUseCenterOrder(boolean useCenterOrder)
+    {
+        this.useCenterOrder = useCenterOrder;
+    }
+
+    /**
+     * Prepares for a new search: forgets the killer moves and halves the history, so what was
+     * learned about older positions counts for less.
+     * 
+     * @param game the game about to be searched.
+     */
+    public void newSearch(Connect4Game game)
+    {
+        int plies = game.getColumnCount() * game.getRowCount() + 1;
+        int slots = game.getColumnCount() * (game.getRowCount() + 1);
+        if (killers.length != plies || history[0].length != slots)
+        {
+            killers = new int[plies][2];
+            history = new int[2][slots];
+            scores = new int[game.getColumnCount()];
+        }
+        for (int[] killer : killers)
+        {
+            killer[0] = -1;
+            killer[1] = -1;
+        }
+        for (int[] table : history)
+        {
+            for (int i = 0; i < table.length; i++)
+            {
+                table[i] >>= 1;
+            }
+        }
+    }
+
+    /**
+     * Fills an array with the playable columns of a position, best first.
+     * 
+     * @param game the position.
+     * @param ply the number of moves since the root of the search.
+     * @param tableMove the best move stored in the transposition table, or -1 if there is none.
+     * @param moves the array to fill; at least getColumnCount() long.
+     * @return the number of moves in the array.
+     */
+    public int orderMoves(Connect4Game game, int ply, int tableMove, int[] moves)
+    {
+        int count = 0;
+        int columns = game.getColumnCount();
+        for (int i = 0; i < columns; i++)
+        {
+            int column = staticColumn(i, columns);
+            if (game.canPlay(column))
+            {
+                int score = scoreMove(game, ply, column, tableMove);
+                // insertion sort; moves of equal score keep their static order
+                int j = count - 1;
+                while (j >= 0 && scores[j] < score)
+                {
+                    moves[j + 1] = moves[j];
+                    scores[j + 1] = scores[j];
+                    j--;
+                }
+                moves[j + 1] = column;
+                scores[j + 1] = score;
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Scores a move for ordering; higher scores are tried first.
+     * 
+     * @param game the position.
+     * @param ply the number of moves since the root of the search.
+     * @param column the move to score.
+     * @param tableMove the best move stored in the transposition table, or -1 if there is none.
+     * @return the score of the move.
+     */
+    protected int scoreMove(Connect4Game game, int ply, int column, int tableMove)
+    {
+        if (useTableMove && column == tableMove)
+        {
+            return TABLE_MOVE_SCORE;
+        }
+        if (useKillers)
+        {
+            if (killers[ply][0] == column)
+            {
+                return KILLER_SCORE + 1;
+            }
+            if (killers[ply][1] == column)
+            {
+                return KILLER_SCORE;
+            }
+        }
+        if (useHistory)
+        {
+            return history[game.isRedToMove() ? 0 : 1][slot(game, column)];
+        }
+        return 0;
+    }
+
+    /**
+     * Records that a move caused a beta cutoff, so similar positions try it earlier.
+     * 
+     * @param game the position, before the move is played.
+     * @param ply the number of moves since the root of the search.
+     * @param column the move that caused the cutoff.
+     * @param depth the remaining depth at the position.
+     * @param moveNumber how many moves were tried before this one.
+     */
+    public void recordCutoff(Connect4Game game, int ply, int column, int depth, int moveNumber)
+    {
+        cutoffs++;
+        if (moveNumber == 0)
+        {
+            firstMoveCutoffs++;
+        }
+        if (killers[ply][0] != column)
+        {
+            killers[ply][1] = killers[ply][0];
+            killers[ply][0] = column;
+        }
+        int[] table = history[game.isRedToMove() ? 0 : 1];
+        int slot = slot(game, column);
+        table[slot] += depth * depth;
+        if (table[slot] >= HISTORY_LIMIT)
+        {
+            for (int i = 0; i < table.length; i++)
+            {
+                table[i] >>= 1;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of cutoffs recorded.
+     * 
+     * @return the number of cutoffs.
+     */
+    public long getCutoffCount()
+    {
+        return cutoffs;
+    }
+
+    /**
+     * Returns the number of cutoffs caused by the first move tried.
+     * 
+     * @return the number of first-move cutoffs.
+     */
+    public long getFirstMoveCutoffCount()
+    {
+        return firstMoveCutoffs;
+    }
+
+    /**
+     * Returns the fraction of cutoffs caused by the first move tried. The closer to 1, the better
+     * the ordering.
+     * 
+     * @return the first-move cutoff rate, or 0 if there were no cutoffs.
+     */
+    public double getFirstMoveCutoffRate()
+    {
+        return cutoffs == 0 ? 0.0 : (double) firstMoveCutoffs / cutoffs;
+    }
+
+    /**
+     * Sets the cutoff counters back to zero.
+     */
+    public void resetStatistics()
+    {
+        cutoffs = 0;
+        firstMoveCutoffs = 0;
+    }
+
+    /**
+     * Returns the ith column in the static order: center out, or left to right.
+     */
+    private int staticColumn(int i, int columns)
+    {
+        if (!useCenterOrder)
+        {
+            return i;
+        }
+        // the center, then alternately one step further left and right
+        return columns / 2 + (1 - 2 * (i & 1)) * ((i + 1) / 2);
+    }
+
+    /**
+     * Returns the history table index of the slot a move would fill.
+     */
+    private static int slot(Connect4Game game, int column)
+    {
+        return column * (game.getRowCount() + 1) + game.getHeight(column);
+    }
+}
@@ -0,0 +1,240 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * A book of opening moves, read from a file written by Connect4BookGenerator.
+ * 
+ * The answers for the first few moves of a game never change, so they can be worked out once,
+ * offline, with as much time as it takes, instead of being searched again in every game. The
+ * book holds the best move and its score for every position of the first moves, keyed by the
+ * Zobrist hash of the position. Books are for games of four in a row.
+ * 
+ * The file is mapped into memory rather than read, so opening even a large book costs next to
+ * nothing: its pages are loaded by the operating system as lookups touch them, and are shared
+ * between every agent and process that opens the same file. A lookup is a binary search over the
+ * entries, which are sorted by hash.
+ * 
+ * The file starts with a header: a magic number, the format version, the number of columns and
+ * rows of the board, and the number of entries. Each entry is then two big-endian longs: the
+ * hash of a position and a data word, read with getMove(), getScore() and getDepth().
+ */
+public class Connect4OpeningBook
+{
+    private static final int MAGIC = 0x4334424B;       // "C4BK"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 24;
+    private static final int ENTRY_BYTES = 16;
+
+    // layout of an entry's data word
+    private static final long VALID = 1L << 63;        // set in every entry, so 0 means none
+    private static final int MOVE_SHIFT = 32;
+    private static final int DEPTH_SHIFT = 40;
+
+    private final int numCols;
+    private final int numRows;
+    private final int entryCount;
+    private final ByteBuffer entries;
+
+    /**
+     * Opens a book by mapping its file into memory.
+     * 
+     * @param file the book file.
+     * @throws IOException if the file cannot be read or is not a book.
+     */
+    public Connect4OpeningBook(File file) throws IOException
+    {
+        RandomAccessFile input = new RandomAccessFile(file, "r");
+        try
+        {
+            FileChannel channel = input.getChannel();
+            long size = channel.size();
+            if (size < HEADER_BYTES || size > Integer.MAX_VALUE)
+            {
+                throw new IOException(file + " is not an opening book.");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION)
+            {
+                throw new IOException(file + " is not an opening book of version " + VERSION + ".");
+            }
+            numCols = buffer.getInt(8);
+            numRows = buffer.getInt(12);
+            long count = buffer.getLong(16);
+            if (count < 0 || HEADER_BYTES + count * ENTRY_BYTES != size)
+            {
+                throw new IOException(file + " is truncated or damaged.");
+            }
+            entryCount = (int) count;
+            entries = buffer;
+        }
+        finally
+        {
+            input.close();     // the mapping stays valid once the file is closed
+        }
+    }
+
+    /**
+     * Returns the number of columns of the board the book is for.
+     * 
+     * @return the number of columns.
+     */
+    public int getColumnCount()
+    {
+        return numCols;
+    }
+
+    /**
+     * Returns the number of rows of the board the book is for.
+     * 
+     * @return the number of rows.
+     */
+    public int getRowCount()
+    {
+        return numRows;
+    }
+
+    /**
+     * Returns the number of positions in the book.
+     * 
+     * @return the number of entries.
+     */
+    public int getEntryCount()
+    {
+        return entryCount;
+    }
+
+    /**
+     * Looks up a position.
+     * 
+     * @param game the position.
+     * @return the entry for the position, to be read with getMove() and the other entry methods;
+     *         0 if the book does not have the position, is for another size of board, or the
+     *         game is not won by four in a row.
+     */
+    public long probe(Connect4Game game)
+    {
+        if (game.getColumnCount() != numCols || game.getRowCount() != numRows
+            || game.getWinLength() != Connect4Game.DEFAULT_WIN_LENGTH)
+        {
+            return 0L;
+        }
+        long key = game.getHash();
+        int low = 0;
+        int high = entryCount - 1;
+        while (low <= high)
+        {
+            int middle = (low + high) >>> 1;
+            long offset = HEADER_BYTES + (long) middle * ENTRY_BYTES;
+            long found = entries.getLong((int) offset);
+            if (found < key)
+            {
+                low = middle + 1;
+            }
+            else if (found > key)
+            {
+                high = middle - 1;
+            }
+            else
+            {
+                return entries.getLong((int) offset + Long.BYTES);
+            }
+        }
+        return 0L;
+    }
+
+    /**
+     * Returns the best move of an entry returned by probe().
+     * 
+     * @param entry the entry.
+     * @return the column to play.
+     */
+    public static int getMove(long entry)
+    {
+        return (int) (entry >>> MOVE_SHIFT) & 0xFF;
+    }
+
+    /**
+     * Returns the score of an entry returned by probe(), in the terms of Connect4Search.
+     * 
+     * @param entry the entry.
+     * @return the score of the best move, from the point of view of the player to move.
+     */
+    public static int getScore(long entry)
+    {
+        return (int) entry;
+    }
+
+    /**
+     * Returns the depth an entry returned by probe() was searched to.
+     * 
+     * @param entry the entry.
+     * @return the number of moves looked ahead.
+     */
+    public static int getDepth(long entry)
+    {
+        return (int) (entry >>> DEPTH_SHIFT) & 0xFF;
+    }
+
+    /**
+     * Packs a move, its score and the depth searched into an entry.
+     * 
+     * @param move the column to play.
+     * @param score the score of the move.
+     * @param depth the number of moves looked ahead; depths over 255 are stored as 255.
+     * @return the entry.
+     */
+    static long entry(int move, int score, int depth)
+    {
+        return VALID
+            | (score & 0xFFFFFFFFL)
+            | ((long) move << MOVE_SHIFT)
+            | ((long) Math.min(depth, 0xFF) << DEPTH_SHIFT);
+    }
+
+    /**
+     * Writes a book file.
+     * 
+     * @param file the file to write.
+     * @param columns the number of columns of the board.
+     * @param rows the number of rows of the board.
+     * @param book the entries, made by entry(), keyed by the hash of their position.
+     * @throws IOException if the file cannot be written.
+     */
+    static void write(File file, int columns, int rows, Map<Long, Long> book) throws IOException
+    {
+        long[] keys = new long[book.size()];
+        int i = 0;
+        for (long key : book.keySet())
+        {
+            keys[i++] = key;
+        }
+        Arrays.sort(keys);
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        try
+        {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(columns);
+            output.writeInt(rows);
+            output.writeLong(keys.length);
+            for (long key : keys)
+            {
+                output.writeLong(key);
+                output.writeLong(book.get(key));
+            }
+        }
+        finally
+        {
+            output.close();
+        }
+    }
+}
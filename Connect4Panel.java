@@ -1,9 +1,15 @@
 import javax.swing.*;
 import java.awt.*;
+import java.awt.image.BufferedImage;
 
 /**
  * The panel for displaying the current status of the game itself.
  * 
+ * The blue board and its empty holes are drawn once into an image, which is only drawn again
+ * when the panel or the board changes size, and so are a red and a yellow slot. Painting copies
+ * the board, copies a slot image over each filled slot, and draws the highlights on top. When a
+ * new position is shown, only the slots that changed are repainted.
+ * 
  * You should not modify this class, and your agent should not need to access the methods within
  * it directly.
  */
@@ -12,6 +18,11 @@ public class Connect4Panel extends JPanel
     private Connect4Game myGame;    // the game to display
     private int slotDiameter;  // size of the individual slots
     private int slotSpacing; // space between slots
+    private BufferedImage background;   // the board with every slot empty, drawn once per size
+    private BufferedImage redSlot;  // a red slot on the blue board, drawn once
+    private BufferedImage yellowSlot;   // a yellow slot on the blue board, drawn once
+    private int backgroundColumns;  // the board size the background was drawn for
+    private int backgroundRows;
     
     /**
      * Creates a new Connect4Panel with a given game.
@@ -34,7 +45,44 @@ public class Connect4Panel extends JPanel
     }
     
     /**
-     * Paints the current status of the game.
+     * Shows another game, such as a newer copy of the game being played. Only the slots whose
+     * token or highlight differ from the game shown before are repainted.
+     * 
+     * Your agent will not need to use this method.
+     * 
+     * @param game the game to display.
+     */
+    public void showGame(Connect4Game game)
+    {
+        Connect4Game old = myGame;
+        this.myGame = game;
+        if (old == null || old.getColumnCount() != game.getColumnCount()
+            || old.getRowCount() != game.getRowCount())
+        {
+            repaint();
+            return;
+        }
+        for (int i = 0; i < game.getColumnCount(); i++)
+        {
+            int word = game.getColumnWord(i);
+            long changed = (old.getRedBits(word) ^ game.getRedBits(word))
+                | (old.getFilledBits(word) ^ game.getFilledBits(word))
+                | (old.getHighlightedBits(word) ^ game.getHighlightedBits(word));
+            for (int j = 0; j < game.getRowCount(); j++)
+            {
+                if ((changed & game.getSlotBit(i, j)) != 0)
+                {
+                    // the highlight's stroke reaches a little past the slot
+                    repaint(slotX(i) - slotSpacing / 2, slotY(j) - slotSpacing / 2,
+                        slotDiameter + slotSpacing, slotDiameter + slotSpacing);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Paints the current status of the game: the cached board, then the tokens and highlights of
+     * the slots inside the area being repainted.
      * 
      * Your agent will not need to use this method.
      * 
@@ -43,35 +91,30 @@ public class Connect4Panel extends JPanel
     public void paint(Graphics g)
     {
         Graphics2D g2 = (Graphics2D) g;
+        g2.drawImage(getBackgroundImage(), 0, 0, null);
         g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-        g2.setColor(Color.BLUE);
-        g2.fillRect(0, 0, getWidth(), getHeight());
         
+        Rectangle clip = g2.getClipBounds();
+        if (clip == null)
+        {
+            clip = new Rectangle(0, 0, getWidth(), getHeight());
+        }
         for (int i = 0; i < myGame.getColumnCount(); i++)
         {
+            int x = slotX(i);
+            if (x + slotDiameter + slotSpacing < clip.x || x - slotSpacing > clip.x + clip.width)
+            {
+                continue;   // the column is outside the area being repainted
+            }
+            Connect4Column column = myGame.getColumn(i);
             for (int j = 0; j < myGame.getRowCount(); j++)
             {
-                Connect4Column column = myGame.getColumn(i);
                 Connect4Slot currentSlot = column.getSlot(j);
-                Color color;
-                if(!currentSlot.getIsFilled())
+                int y = slotY(j);
+                if (currentSlot.getIsFilled())
                 {
-                    color=Color.WHITE;
+                    g2.drawImage(currentSlot.getIsRed() ? redSlot : yellowSlot, x, y, null);
                 }
-                else
-                {
-                    if (currentSlot.getIsRed())
-                    {
-                        color = Color.RED;
-                    }
-                    else
-                    {
-                        color = Color.YELLOW;
-                    }
-                }
-                int x = ((i + 1) * slotSpacing) + (i * slotDiameter);
-                int y = ((j + 1) * slotSpacing) + (j * slotDiameter);
-                drawSlot(g2, x, y, color);
                 if (currentSlot.getIsHighlighted())
                 {
                     drawHighlight(g2, x, y);
@@ -80,6 +123,69 @@ public class Connect4Panel extends JPanel
         }
     }
     
+    /**
+     * Returns the image of the board with every slot empty, drawing it again if the panel or the
+     * board has changed size since it was last drawn.
+     */
+    private BufferedImage getBackgroundImage()
+    {
+        int width = Math.max(getWidth(), 1);
+        int height = Math.max(getHeight(), 1);
+        if (background == null || background.getWidth() != width || background.getHeight() != height
+            || backgroundColumns != myGame.getColumnCount() || backgroundRows != myGame.getRowCount())
+        {
+            background = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            backgroundColumns = myGame.getColumnCount();
+            backgroundRows = myGame.getRowCount();
+            Graphics2D g2 = background.createGraphics();
+            g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g2.setColor(Color.BLUE);
+            g2.fillRect(0, 0, width, height);
+            for (int i = 0; i < backgroundColumns; i++)
+            {
+                for (int j = 0; j < backgroundRows; j++)
+                {
+                    drawSlot(g2, slotX(i), slotY(j), Color.WHITE);
+                }
+            }
+            g2.dispose();
+            redSlot = drawSlotImage(Color.RED);
+            yellowSlot = drawSlotImage(Color.YELLOW);
+        }
+        return background;
+    }
+    
+    /**
+     * Returns an image of a single slot of the given color, with the blue of the board around it.
+     */
+    private BufferedImage drawSlotImage(Color color)
+    {
+        BufferedImage image = new BufferedImage(slotDiameter, slotDiameter, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2 = image.createGraphics();
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2.setColor(Color.BLUE);
+        g2.fillRect(0, 0, slotDiameter, slotDiameter);
+        drawSlot(g2, 0, 0, color);
+        g2.dispose();
+        return image;
+    }
+    
+    /**
+     * Returns the left x-coordinate of the slots of a column.
+     */
+    private int slotX(int column)
+    {
+        return ((column + 1) * slotSpacing) + (column * slotDiameter);
+    }
+    
+    /**
+     * Returns the top y-coordinate of the slots of a row.
+     */
+    private int slotY(int row)
+    {
+        return ((row + 1) * slotSpacing) + (row * slotDiameter);
+    }
+    
     /**
      * Draw a single slot.
      * 
@@ -0,0 +1,283 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A Connect4Search that shares the moves at the root between several threads.
+ * 
+ * Each iteration searches the first root move, the best one of the last iteration, on the
+ * calling thread. Its score is a bound the other moves must beat, so the rest of the moves are
+ * then handed out one at a time to workers in a ForkJoinPool. Whenever a worker finds a better
+ * move it raises the shared bound, and every move started after that is searched against it.
+ * 
+ * The other moves are searched with a bound one below the best score so far, so a move that
+ * ties with the best still gets its exact score. Among equally good moves the one first in the
+ * root order is played, just as in the sequential search, so the move chosen does not depend on
+ * which worker finished first.
+ * 
+ * Every worker has a transposition table of its own, so what one worker stores cannot change
+ * the scores another finds, however the threads are timed. With a thread count of 1 this is the
+ * plain sequential search.
+ * 
+ * Stopping the search, or interrupting the thread that called search(), stops the workers too.
+ */
+public class Connect4ParallelSearch extends Connect4Search
+{
+    // the smallest transposition table a worker is given
+    private static final long MIN_WORKER_TABLE_CAPACITY = 1 << 16;
+
+    private final ForkJoinPool pool;        // null when searching on one thread
+    private final Connect4Search[] workers;
+    private volatile Thread searcher;       // the thread running the current search
+    private long[] threadNodeCounts = new long[0];
+
+    /**
+     * Creates a search with its own transposition table of DEFAULT_TABLE_CAPACITY entries.
+     * 
+     * @param threadCount the number of threads to search with, at least 1.
+     */
+    public Connect4ParallelSearch(int threadCount)
+    {
+        this(new Connect4TranspositionTable(DEFAULT_TABLE_CAPACITY), threadCount);
+    }
+
+    /**
+     * Creates a search that uses the given transposition table on the calling thread. Each
+     * worker gets a table of its own, with an equal share of the given table's capacity.
+     * 
+     * @param table the table to use, or null to search without tables.
+     * @param threadCount the number of threads to search with, at least 1.
+     */
+    public Connect4ParallelSearch(Connect4TranspositionTable table, int threadCount)
+    {
+        super(table);
+        if (threadCount < 1)
+        {
+            throw new IllegalArgumentException("A search needs at least one thread.");
+        }
+        if (threadCount == 1)
+        {
+            pool = null;
+            workers = new Connect4Search[0];
+            return;
+        }
+        pool = new ForkJoinPool(threadCount);
+        workers = new Connect4Search[threadCount];
+        for (int i = 0; i < threadCount; i++)
+        {
+            Connect4TranspositionTable workerTable = null;
+            if (table != null)
+            {
+                long capacity = Math.max(table.getCapacity() / threadCount, MIN_WORKER_TABLE_CAPACITY);
+                workerTable = new Connect4TranspositionTable(capacity);
+            }
+            workers[i] = new Worker(workerTable);
+        }
+    }
+
+    /**
+     * Stops the workers' threads. The search cannot be used afterwards.
+     */
+    public void shutdown()
+    {
+        if (pool != null)
+        {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns the number of threads the search uses.
+     * 
+     * @return the thread count.
+     */
+    public int getThreadCount()
+    {
+        return Math.max(workers.length, 1);
+    }
+
+    /**
+     * Returns the number of positions each thread visited in the last search. getNodeCount()
+     * returns their total.
+     * 
+     * @return the node counts; the first is the calling thread's, the rest the workers'.
+     */
+    public long[] getThreadNodeCounts()
+    {
+        return threadNodeCounts.clone();
+    }
+
+    /**
+     * Returns the node counts of getThreadNodeCounts() for the metrics.
+     */
+    long[] threadNodeCounts()
+    {
+        return getThreadNodeCounts();
+    }
+
+    /**
+     * Starts a new search in the workers' tables as well as in this search's.
+     */
+    void newSearch()
+    {
+        super.newSearch();
+        for (Connect4Search worker : workers)
+        {
+            worker.newSearch();
+        }
+    }
+
+    /**
+     * Gets the workers ready and searches the game. The workers use the same move ordering
+     * settings and evaluate() as this search. Their counts are added to this search's after
+     * every iteration, and kept per thread as well.
+     */
+    int searchPosition(Connect4Game game, int maxDepth, long timeLimitMillis, long start)
+    {
+        searcher = Thread.currentThread();
+        for (Connect4Search worker : workers)
+        {
+            worker.setMoveOrdering(new Connect4MoveOrdering(getMoveOrdering()));
+            worker.prepare(game);
+        }
+        long[] counts = new long[workers.length + 1];
+        threadNodeCounts = counts;
+        int column = super.searchPosition(game, maxDepth, timeLimitMillis, start);
+        counts[0] = getNodeCount();
+        for (int i = 1; i < counts.length; i++)
+        {
+            counts[0] -= counts[i];
+        }
+        return column;
+    }
+
+    /**
+     * Searches the first root move on this thread, then the rest on the workers.
+     */
+    int searchRoot(final Connect4Game game, final int depth, final int[] order, final int[] scores,
+        final int moves)
+    {
+        if (pool == null || moves < 2)
+        {
+            return super.searchRoot(game, depth, order, scores, moves);
+        }
+        countNode();
+        scores[0] = searchMove(game, order[0], depth, -WIN_SCORE - 1, WIN_SCORE);
+        if (isTimeUp())
+        {
+            return -1;
+        }
+
+        final AtomicInteger best = new AtomicInteger(scores[0]);
+        final AtomicInteger next = new AtomicInteger(1);
+        final long deadline = getDeadline();
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (final Connect4Search worker : workers)
+        {
+            tasks.add(new Callable<Void>()
+            {
+                public Void call()
+                {
+                    Connect4Game copy = new Connect4Game(game);
+                    worker.setDeadline(deadline);
+                    int i;
+                    while ((i = next.getAndIncrement()) < moves)
+                    {
+                        // one below the best, so a move as good as the best gets an exact score
+                        int score = worker.searchMove(copy, order[i], depth, best.get() - 1,
+                            WIN_SCORE);
+                        if (worker.isTimeUp())
+                        {
+                            break;
+                        }
+                        scores[i] = score;
+                        raise(best, score);
+                    }
+                    return null;
+                }
+            });
+        }
+        try
+        {
+            for (Future<Void> result : pool.invokeAll(tasks))
+            {
+                result.get();
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            stop();
+        }
+        catch (ExecutionException e)
+        {
+            throw new IllegalStateException("A search worker failed.", e.getCause());
+        }
+
+        for (int i = 0; i < workers.length; i++)
+        {
+            Connect4Search worker = workers[i];
+            threadNodeCounts[i + 1] += takeCounts(worker);
+            if (worker.isTimeUp())
+            {
+                stop();
+            }
+        }
+        if (isTimeUp())
+        {
+            return -1;
+        }
+        return finishRoot(game, depth, order, scores, moves);
+    }
+
+    /**
+     * Stops the search and its workers. Safe to call from another thread.
+     */
+    void stop()
+    {
+        super.stop();
+        for (Connect4Search worker : workers)
+        {
+            worker.stop();
+        }
+    }
+
+    /**
+     * Raises a shared score to at least the given value.
+     */
+    private static void raise(AtomicInteger shared, int score)
+    {
+        int current = shared.get();
+        while (score > current && !shared.compareAndSet(current, score))
+        {
+            current = shared.get();
+        }
+    }
+
+    /**
+     * A search run by one worker thread, scoring positions with the evaluate() of the search it
+     * works for.
+     */
+    private class Worker extends Connect4Search
+    {
+        Worker(Connect4TranspositionTable table)
+        {
+            super(table, false);    // only the calling thread solves
+        }
+
+        protected int evaluate(Connect4Game game)
+        {
+            return Connect4ParallelSearch.this.evaluate(game);
+        }
+
+        boolean isInterrupted()
+        {
+            Thread thread = searcher;
+            return thread != null && thread.isInterrupted();
+        }
+    }
+}
@@ -0,0 +1,213 @@
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Searches on a background thread while the opponent thinks about their move, so the time is
+ * not wasted.
+ * 
+ * After an agent moves, the ponderer takes the position and searches what the agent would play
+ * after the opponent's reply: either the reply the agent's search predicted, or every reply in
+ * turn, a short time slice each, so all of them get deeper together. It searches with the
+ * agent's own search, which the agent does not use while it is not its turn, so everything it
+ * finds is there for the agent's next move: in the transposition tables of all the search's
+ * threads, and in its solver's table near the end of the game. The result for each reply also
+ * goes into a cache of best moves, keyed by the position's hash.
+ * 
+ * Pondering is one search as far as the tables are concerned: it starts a new search once, and
+ * then searches each time slice as part of it, so the slices do not age each other's entries.
+ * Pondered searches are not recorded by the search's monitor.
+ * 
+ * When the opponent's move comes in, the agent stops the ponderer, which returns once its thread
+ * has finished; a search that was cut short keeps the result of its last full iteration, and a
+ * solve that was cut short falls back to searching to a depth. The agent can then look the
+ * position up in the cache, and search it with tables that already hold the pondered positions.
+ * When the opponent's move ends the game instead, the agent should stop the ponderer too.
+ */
+public class Connect4Ponderer
+{
+    private static final int MAX_DEPTH = 64;
+    private static final long DEFAULT_SLICE_MILLIS = 50;
+    private static final long DEFAULT_MAX_PONDER_MILLIS = 30000;
+    // how often stop() stops the search again, in case a new search started just after it
+    private static final long STOP_RETRY_MILLIS = 5;
+
+    private final Connect4Search search;
+    private final Map<Long, Connect4SearchMetrics> results =
+        new ConcurrentHashMap<Long, Connect4SearchMetrics>();
+    private long sliceMillis = DEFAULT_SLICE_MILLIS;
+    private long maxPonderMillis = DEFAULT_MAX_PONDER_MILLIS;
+    private Thread thread;
+    private volatile boolean stopped;
+
+    /**
+     * Creates a ponderer that searches with the agent's own search. The agent must stop the
+     * ponderer before it searches itself.
+     * 
+     * @param search the agent's search; it must have a transposition table.
+     */
+    public Connect4Ponderer(Connect4Search search)
+    {
+        if (search.getTranspositionTable() == null)
+        {
+            throw new IllegalArgumentException("A ponderer needs a search with a transposition table.");
+        }
+        this.search = search;
+    }
+
+    /**
+     * Sets how long each reply is searched before the next one gets its turn, when every reply
+     * is pondered.
+     * 
+     * @param sliceMillis the time slice, in milliseconds.
+     */
+    public void setSliceMillis(long sliceMillis)
+    {
+        this.sliceMillis = sliceMillis;
+    }
+
+    /**
+     * Sets how long the ponderer searches if it is not stopped first, so it does not run on
+     * after the game is over.
+     * 
+     * @param maxPonderMillis the longest time to ponder, in milliseconds.
+     */
+    public void setMaxPonderMillis(long maxPonderMillis)
+    {
+        this.maxPonderMillis = maxPonderMillis;
+    }
+
+    /**
+     * Stops any pondering, forgets the cached results, and starts pondering a new position.
+     * 
+     * @param game the position, with the opponent to move; it is copied, not changed.
+     * @param predictedReply the opponent's reply to ponder, or -1 to ponder every reply.
+     */
+    public synchronized void start(Connect4Game game, int predictedReply)
+    {
+        stop();
+        results.clear();
+        stopped = false;
+        final Connect4Game position = new Connect4Game(game);
+        final int[] replies = replies(position, predictedReply);
+        if (replies.length == 0)
+        {
+            return;
+        }
+        thread = new Thread(new Runnable()
+        {
+            public void run()
+            {
+                ponder(position, replies);
+            }
+        }, "Connect4Ponderer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops pondering, and waits for the pondering thread to finish.
+     */
+    public synchronized void stop()
+    {
+        stopped = true;
+        if (thread != null)
+        {
+            boolean interrupted = false;
+            while (thread.isAlive())
+            {
+                search.stop();
+                try
+                {
+                    thread.join(STOP_RETRY_MILLIS);
+                }
+                catch (InterruptedException e)
+                {
+                    interrupted = true;
+                }
+            }
+            thread = null;
+            if (interrupted)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Returns what the ponderer found for a position, if it pondered it.
+     * 
+     * @param game the position, with the agent to move.
+     * @return the metrics of the last search of the position, whose column is the best move
+     *         found; null if the position was not pondered.
+     */
+    public Connect4SearchMetrics getResult(Connect4Game game)
+    {
+        return results.get(game.getHash());
+    }
+
+    /**
+     * Searches the position after each reply in turn, one time slice each, until every result
+     * is certain, the ponderer is stopped, or the time runs out.
+     */
+    private void ponder(Connect4Game position, int[] replies)
+    {
+        long end = System.nanoTime() + maxPonderMillis * 1000000L;
+        long slice = replies.length == 1 ? maxPonderMillis : sliceMillis;
+        boolean[] done = new boolean[replies.length];
+        int remaining = replies.length;
+        Connect4SearchMonitor monitor = search.getMonitor();
+        search.setMonitor(null);
+        search.newSearch();
+        try
+        {
+            while (remaining > 0 && !stopped && System.nanoTime() - end < 0)
+            {
+                for (int i = 0; i < replies.length && !stopped; i++)
+                {
+                    if (done[i])
+                    {
+                        continue;
+                    }
+                    position.play(replies[i]);
+                    search.continueSearch(position, MAX_DEPTH, slice);
+                    Connect4SearchMetrics metrics = search.getLastMetrics();
+                    results.put(position.getHash(), metrics);
+                    int emptySlots = position.getColumnCount() * position.getRowCount()
+                        - position.getMoveCount();
+                    if (Connect4Search.isDecisive(metrics.getScore()) || metrics.getDepth() >= emptySlots)
+                    {
+                        done[i] = true;
+                        remaining--;
+                    }
+                    position.undo();
+                }
+            }
+        }
+        finally
+        {
+            search.setMonitor(monitor);
+        }
+    }
+
+    /**
+     * Returns the replies worth pondering: the predicted one, or every move, leaving out moves
+     * after which the game is over.
+     */
+    private static int[] replies(Connect4Game game, int predictedReply)
+    {
+        int columns = game.getColumnCount();
+        int[] replies = new int[columns];
+        int count = 0;
+        boolean lastSlot = game.getMoveCount() >= columns * game.getRowCount() - 1;
+        for (int column = 0; column < columns; column++)
+        {
+            if ((predictedReply < 0 || column == predictedReply) && game.canPlay(column)
+                && !game.isWinningMove(column) && !lastSlot)
+            {
+                replies[count++] = column;
+            }
+        }
+        return Arrays.copyOf(replies, count);
+    }
+}
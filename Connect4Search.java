@@ -0,0 +1,841 @@
+import java.util.Arrays;
+
+/**
+ * A game tree search for Connect 4 that any agent can use to choose its moves.
+ * 
+ * The search is a negamax search with alpha-beta pruning: every score is from the point of view
+ * of the player to move, and branches that cannot change the result are cut off. Scores are
+ * fail-soft, so a search that falls outside its window still returns the best bound it found.
+ * 
+ * A win scores WIN_SCORE minus the number of moves it takes, counting both players' moves from
+ * the position searched, so quicker wins score higher and slower losses score higher than quick
+ * ones. A draw scores 0, and a position at the depth limit scores evaluate(), which asks the
+ * search's Connect4Evaluator.
+ * 
+ * Results are kept in a transposition table, so a position reached again through a different
+ * order of moves is not searched twice. The table lives as long as the search object, so later
+ * searches also reuse what earlier ones found.
+ * 
+ * Moves are tried in the order given by a Connect4MoveOrdering, which can be replaced to change
+ * how the search orders its moves.
+ * 
+ * The search deepens iteratively: it searches one move ahead, then two, and so on, trying the
+ * best move of each iteration first in the next. Given a time limit, it stops when the time
+ * runs out and plays the best move of the last iteration it finished.
+ * 
+ * The search plays and undoes moves on the game it is given, so agents should search a copy of
+ * their game:
+ *     int column = search.search(new Connect4Game(myGame), maxDepth, timeLimitMillis);
+ * 
+ * Every search also counts what it does, and leaves a Connect4SearchMetrics behind when it is
+ * done, which getLastMetrics() returns and which is given to the search's monitor if it has one.
+ */
+public class Connect4Search
+{
+    /**
+     * The score of winning on the very next move.
+     */
+    public static final int WIN_SCORE = 1000000;
+    /**
+     * The number of entries in the transposition table of a search created with no table.
+     */
+    public static final int DEFAULT_TABLE_CAPACITY = 1 << 20;
+
+    /**
+     * The number of empty slots at or below which a search hands the position to the solver.
+     */
+    public static final int DEFAULT_SOLVER_THRESHOLD = 24;
+
+    // how many nodes to visit between looks at the clock; few, since a node of a big board,
+    // before the JIT has compiled the search, can take fifty microseconds
+    private static final int CLOCK_CHECK_INTERVAL = 64;
+
+    private Connect4TranspositionTable table;
+    private Connect4MoveOrdering ordering;
+    private Connect4Evaluator evaluator;
+    private volatile Connect4Solver solver;     // null in a search that never solves
+    private int solverThreshold = DEFAULT_SOLVER_THRESHOLD;
+    private int[][] moveLists = new int[0][];   // the ordered moves of each ply being searched
+    private Connect4SearchMonitor monitor;
+    private long nodeCount;     // positions visited by the last search
+    private long tableProbes;
+    private long tableHits;
+    private long expandedNodes; // positions whose moves were tried
+    private long cutoffs;
+    private long firstMoveCutoffs;
+    private long[] iterationNodes = new long[0];
+    private long[] iterationNanos = new long[0];
+    private boolean solved;     // the last search handed the position to the solver
+    private Connect4SearchMetrics lastMetrics;
+    private int lastScore;      // score of the move chosen by the last search
+    private int lastDepth;      // depth of the last iteration the last search finished
+    private long deadline;      // System.nanoTime() at which to stop searching
+    private volatile boolean timeUp;    // set once the deadline has passed, or by stop()
+
+    /**
+     * Creates a search with its own transposition table of DEFAULT_TABLE_CAPACITY entries.
+     */
+    public Connect4Search()
+    {
+        this(new Connect4TranspositionTable(DEFAULT_TABLE_CAPACITY));
+    }
+
+    /**
+     * Creates a search that uses the given transposition table. The search's solver is created
+     * with it, so the solver's table is not allocated in the middle of a timed move.
+     * 
+     * @param table the table to use, or null to search without one.
+     */
+    public Connect4Search(Connect4TranspositionTable table)
+    {
+        this(table, true);
+    }
+
+    /**
+     * Creates a search that uses the given transposition table, with or without a solver. A
+     * search without one searches every position to a depth, whatever the solver threshold.
+     * 
+     * @param table the table to use, or null to search without one.
+     * @param solving true to create a solver for the search.
+     */
+    Connect4Search(Connect4TranspositionTable table, boolean solving)
+    {
+        this.table = table;
+        this.ordering = new Connect4MoveOrdering();
+        this.evaluator = new Connect4Evaluator();
+        if (solving)
+        {
+            solver = new Connect4Solver();
+        }
+    }
+
+    /**
+     * Returns the transposition table of the search.
+     * 
+     * @return the table, or null if the search has none.
+     */
+    public Connect4TranspositionTable getTranspositionTable()
+    {
+        return table;
+    }
+
+    /**
+     * Returns the move ordering of the search.
+     * 
+     * @return the move ordering.
+     */
+    public Connect4MoveOrdering getMoveOrdering()
+    {
+        return ordering;
+    }
+
+    /**
+     * Replaces the move ordering of the search.
+     * 
+     * @param ordering the move ordering to use.
+     */
+    public void setMoveOrdering(Connect4MoveOrdering ordering)
+    {
+        this.ordering = ordering;
+    }
+
+    /**
+     * Returns the evaluator that scores the positions at the depth limit.
+     * 
+     * @return the evaluator, or null if every such position scores 0.
+     */
+    public Connect4Evaluator getEvaluator()
+    {
+        return evaluator;
+    }
+
+    /**
+     * Replaces the evaluator that scores the positions at the depth limit.
+     * 
+     * @param evaluator the evaluator to use, or null to score every such position as even.
+     */
+    public void setEvaluator(Connect4Evaluator evaluator)
+    {
+        this.evaluator = evaluator;
+    }
+
+    /**
+     * Returns the monitor the search's metrics are given to.
+     * 
+     * @return the monitor, or null if there is none.
+     */
+    public Connect4SearchMonitor getMonitor()
+    {
+        return monitor;
+    }
+
+    /**
+     * Sets the monitor to give the metrics of each search to, once the move is chosen.
+     * 
+     * @param monitor the monitor, or null for none.
+     */
+    public void setMonitor(Connect4SearchMonitor monitor)
+    {
+        this.monitor = monitor;
+    }
+
+    /**
+     * Returns the number of empty slots at or below which the search solves the position
+     * outright with a Connect4Solver.
+     * 
+     * @return the solver threshold.
+     */
+    public int getSolverThreshold()
+    {
+        return solverThreshold;
+    }
+
+    /**
+     * Sets the number of empty slots at or below which the search solves the position outright
+     * with a Connect4Solver, instead of searching it to a depth. A timed search gives the solver
+     * half its time, and searches to a depth as usual if the solver does not finish in it, so a
+     * threshold too high for the time of a move wastes time rather than losing on time.
+     * 
+     * @param solverThreshold the solver threshold; -1 to never use the solver.
+     */
+    public void setSolverThreshold(int solverThreshold)
+    {
+        this.solverThreshold = solverThreshold;
+    }
+
+    /**
+     * Searches a game to a fixed depth and returns the best move for the player whose turn it is.
+     * 
+     * @param game the game to search; it must have at least one open slot and no winner.
+     * @param depth the number of moves to look ahead, at least 1.
+     * @return the column of the best move.
+     */
+    public int search(Connect4Game game, int depth)
+    {
+        return search(game, depth, Long.MAX_VALUE);
+    }
+
+    /**
+     * Searches a game one move deeper at a time until it reaches maxDepth, the result is certain,
+     * or the time limit passes, and returns the best move for the player whose turn it is.
+     * 
+     * The first iteration always finishes, however long it takes, so there is always a move to
+     * return. Any later iteration that is cut short by the time limit is thrown away.
+     * 
+     * With no more empty slots than the solver threshold, the position is solved instead, whatever
+     * the depth, and the move returned is the best there is. The solver may take up to half the
+     * time limit; if it cannot finish in that time, the search goes on in the time that is left.
+     * 
+     * @param game the game to search; it must have at least one open slot and no winner.
+     * @param maxDepth the greatest number of moves to look ahead, at least 1.
+     * @param timeLimitMillis how long to search, in milliseconds.
+     * @return the column of the best move.
+     */
+    public int search(Connect4Game game, int maxDepth, long timeLimitMillis)
+    {
+        newSearch();
+        return continueSearch(game, maxDepth, timeLimitMillis);
+    }
+
+    /**
+     * Searches a game like search(), but as part of the last search instead of a new one: what
+     * was stored in the transposition tables since newSearch() keeps its place under the
+     * depth-preferred policy. A search split into time slices calls newSearch() once, and then
+     * this for each slice.
+     * 
+     * @param game the game to search; it must have at least one open slot and no winner.
+     * @param maxDepth the greatest number of moves to look ahead, at least 1.
+     * @param timeLimitMillis how long to search, in milliseconds.
+     * @return the column of the best move.
+     */
+    int continueSearch(Connect4Game game, int maxDepth, long timeLimitMillis)
+    {
+        long start = System.nanoTime();
+        int column = searchPosition(game, maxDepth, timeLimitMillis, start);
+        long[] counts = {nodeCount, tableProbes, tableHits, expandedNodes, cutoffs, firstMoveCutoffs};
+        lastMetrics = new Connect4SearchMetrics(column, lastScore, lastDepth, solved, counts,
+            threadNodeCounts(), System.nanoTime() - start, iterationNodes, iterationNanos,
+            principalVariation(game, column));
+        if (monitor != null)
+        {
+            monitor.record(lastMetrics);
+        }
+        return column;
+    }
+
+    /**
+     * Returns the number of positions each thread visited in the last search, for its metrics.
+     * Subclasses that search with other threads override this.
+     * 
+     * @return the node counts, the calling thread's first.
+     */
+    long[] threadNodeCounts()
+    {
+        return new long[] {nodeCount};
+    }
+
+    /**
+     * Does the work of search(). Subclasses that search with other threads override this, so
+     * every thread's work is done, and counted, by the time the metrics are made.
+     * 
+     * @param game the game to search; it must have at least one open slot and no winner.
+     * @param maxDepth the greatest number of moves to look ahead, at least 1.
+     * @param timeLimitMillis how long to search, in milliseconds.
+     * @param start the System.nanoTime() at which the search started.
+     * @return the column of the best move.
+     */
+    int searchPosition(Connect4Game game, int maxDepth, long timeLimitMillis, long start)
+    {
+        prepare(game);
+        int columns = game.getColumnCount();
+        int emptySlots = columns * game.getRowCount() - game.getMoveCount();
+        long iterationStart = start;
+        if (solver != null && emptySlots <= solverThreshold && Connect4Solver.canSolve(game))
+        {
+            long solverDeadline = Long.MAX_VALUE;
+            if (timeLimitMillis != Long.MAX_VALUE)
+            {
+                solverDeadline = start + timeLimitMillis * 1000000L / 2;
+            }
+            int column = timeUp ? -1 : solver.solve(game, solverDeadline);
+            nodeCount = solver.getNodeCount();
+            if (column >= 0)
+            {
+                lastScore = solver.getLastScore();
+                lastDepth = emptySlots;
+                solved = true;
+                iterationNodes = new long[0];
+                iterationNanos = new long[0];
+                return column;
+            }
+            iterationStart = System.nanoTime();     // out of time for the solver; search instead
+        }
+        maxDepth = Math.min(maxDepth, emptySlots);
+        solved = false;
+        lastScore = 0;      // until an iteration finishes, which a stop() can prevent
+        lastDepth = 0;
+        iterationNodes = new long[maxDepth];
+        iterationNanos = new long[maxDepth];
+        long nodesBefore = nodeCount;
+
+        // the playable columns, best first, and their scores in the last iteration
+        int[] order = new int[columns];
+        int[] scores = new int[columns];
+        int moves = ordering.orderMoves(game, 0, rootTableMove(game), order);
+
+        int bestColumn = order[0];
+        for (int depth = 1; depth <= maxDepth; depth++)
+        {
+            int column = searchRoot(game, depth, order, scores, moves);
+            if (timeUp)
+            {
+                break;
+            }
+            bestColumn = column;
+            lastScore = scores[0];
+            lastDepth = depth;
+            long now = System.nanoTime();
+            iterationNodes[depth - 1] = nodeCount - nodesBefore;
+            iterationNanos[depth - 1] = now - iterationStart;
+            iterationStart = now;
+            nodesBefore = nodeCount;
+            if (isDecisive(lastScore))
+            {
+                break;
+            }
+            if (depth == 1 && timeLimitMillis != Long.MAX_VALUE)
+            {
+                deadline = start + timeLimitMillis * 1000000L;   // from here on, stop in time
+            }
+        }
+        iterationNodes = Arrays.copyOf(iterationNodes, lastDepth);
+        iterationNanos = Arrays.copyOf(iterationNanos, lastDepth);
+        return bestColumn;
+    }
+
+    /**
+     * Returns the depth of the last iteration finished by the last search.
+     * 
+     * @return the depth the chosen move was searched to.
+     */
+    public int getLastDepth()
+    {
+        return lastDepth;
+    }
+
+    /**
+     * Searches every move at the root to a given depth. Moves are searched in the given order,
+     * and then the best move is moved to the front so the next iteration tries it first.
+     * 
+     * @return the column of the best move; not meaningful if the time ran out.
+     */
+    int searchRoot(Connect4Game game, int depth, int[] order, int[] scores, int moves)
+    {
+        nodeCount++;
+        int alpha = -WIN_SCORE - 1;
+        for (int i = 0; i < moves; i++)
+        {
+            int score = searchMove(game, order[i], depth, alpha, WIN_SCORE);
+            if (timeUp)
+            {
+                return -1;
+            }
+            scores[i] = score;
+            alpha = Math.max(alpha, score);
+        }
+        return finishRoot(game, depth, order, scores, moves);
+    }
+
+    /**
+     * Moves the best root move to the front, and stores the result of the root in the
+     * transposition table. The other moves keep their order: most of their scores are only
+     * bounds, which say little about which of them is better. That way the order, and so the
+     * move chosen among equally good ones, depends only on the best move of each iteration.
+     * 
+     * @return the column of the best move.
+     */
+    int finishRoot(Connect4Game game, int depth, int[] order, int[] scores, int moves)
+    {
+        // the first of the best, so among equal scores the earlier move is chosen
+        int best = 0;
+        for (int i = 1; i < moves; i++)
+        {
+            if (scores[i] > scores[best])
+            {
+                best = i;
+            }
+        }
+        int column = order[best];
+        int score = scores[best];
+        for (int i = best; i > 0; i--)
+        {
+            order[i] = order[i - 1];
+            scores[i] = scores[i - 1];
+        }
+        order[0] = column;
+        scores[0] = score;
+        if (table != null)
+        {
+            table.store(game.getHash(), depth, Connect4TranspositionTable.EXACT, scores[0], order[0]);
+        }
+        return order[0];
+    }
+
+    /**
+     * Marks the start of a new search in the transposition table, so that entries stored by
+     * earlier searches can be replaced by shallower results.
+     */
+    void newSearch()
+    {
+        if (table != null)
+        {
+            table.newSearch();
+        }
+    }
+
+    /**
+     * Gets the search ready for a new position: resets the node count and the clock, and sizes
+     * the per-ply move lists for the board.
+     * 
+     * @param game the position about to be searched.
+     */
+    void prepare(Connect4Game game)
+    {
+        deadline = Long.MAX_VALUE;
+        timeUp = false;
+        nodeCount = 0;
+        tableProbes = 0;
+        tableHits = 0;
+        expandedNodes = 0;
+        cutoffs = 0;
+        firstMoveCutoffs = 0;
+        ordering.newSearch(game);
+        int columns = game.getColumnCount();
+        int plies = columns * game.getRowCount() + 1;
+        if (moveLists.length != plies || moveLists[0].length != columns)
+        {
+            moveLists = new int[plies][columns];
+        }
+    }
+
+    /**
+     * Scores one move at the root.
+     * 
+     * @param game the position, which is left unchanged.
+     * @param column the move to score.
+     * @param depth the number of moves to look ahead, counting this one.
+     * @param alpha the score the player to move is already sure of.
+     * @param beta the score the opponent is already sure to hold the player to.
+     * @return the score of the move, exact if it lies strictly between alpha and beta.
+     */
+    int searchMove(Connect4Game game, int column, int depth, int alpha, int beta)
+    {
+        if (game.isWinningMove(column))
+        {
+            return WIN_SCORE - 1;
+        }
+        game.play(column);
+        int score = -negamax(game, depth - 1, -beta, -alpha, 1);
+        game.undo();
+        return score;
+    }
+
+    /**
+     * Returns the time at which the search stops.
+     * 
+     * @return the deadline, as a System.nanoTime() value.
+     */
+    long getDeadline()
+    {
+        return deadline;
+    }
+
+    /**
+     * Sets the time at which the search stops.
+     * 
+     * @param deadline the deadline, as a System.nanoTime() value.
+     */
+    void setDeadline(long deadline)
+    {
+        this.deadline = deadline;
+    }
+
+    /**
+     * Checks if the search has passed its deadline since it was last prepared.
+     * 
+     * @return true if the time is up.
+     */
+    boolean isTimeUp()
+    {
+        return timeUp;
+    }
+
+    /**
+     * Stops the search, as if its time were up. Safe to call from another thread.
+     */
+    void stop()
+    {
+        timeUp = true;
+        Connect4Solver current = solver;
+        if (current != null)
+        {
+            current.stop();
+        }
+    }
+
+    /**
+     * Stops the threads the search runs on besides the calling thread, if it has any. The search
+     * cannot be used afterwards.
+     */
+    public void shutdown()
+    {
+    }
+
+    /**
+     * Checks if the search has been cancelled from outside: by default, if the thread it runs on
+     * has been interrupted. The search then stops as if its time were up.
+     * 
+     * @return true if the search should stop.
+     */
+    boolean isInterrupted()
+    {
+        return Thread.currentThread().isInterrupted();
+    }
+
+    /**
+     * Adds what a helper search has counted since it was last prepared, or last taken from, to
+     * this search's counts, and starts the helper counting again.
+     * 
+     * @param helper the helper; it must not be searching.
+     * @return the number of positions the helper visited.
+     */
+    long takeCounts(Connect4Search helper)
+    {
+        long count = helper.nodeCount;
+        nodeCount += count;
+        tableProbes += helper.tableProbes;
+        tableHits += helper.tableHits;
+        expandedNodes += helper.expandedNodes;
+        cutoffs += helper.cutoffs;
+        firstMoveCutoffs += helper.firstMoveCutoffs;
+        helper.nodeCount = 0;
+        helper.tableProbes = 0;
+        helper.tableHits = 0;
+        helper.expandedNodes = 0;
+        helper.cutoffs = 0;
+        helper.firstMoveCutoffs = 0;
+        return count;
+    }
+
+    /**
+     * Counts a position visited outside of the search proper, such as the root.
+     */
+    void countNode()
+    {
+        nodeCount++;
+    }
+
+    /**
+     * Returns the score of the move chosen by the last search.
+     * 
+     * @return the score, from the point of view of the player who was to move.
+     */
+    public int getLastScore()
+    {
+        return lastScore;
+    }
+
+    /**
+     * Returns the number of positions visited by the last search.
+     * 
+     * @return the node count.
+     */
+    public long getNodeCount()
+    {
+        return nodeCount;
+    }
+
+    /**
+     * Returns the metrics of the last search.
+     * 
+     * @return the metrics, or null if the search has not been run.
+     */
+    public Connect4SearchMetrics getLastMetrics()
+    {
+        return lastMetrics;
+    }
+
+    /**
+     * Checks if a score is a forced win or loss rather than an evaluation.
+     * 
+     * @param score a score returned by the search.
+     * @return true if the score is a proven win or loss.
+     */
+    public static boolean isDecisive(int score)
+    {
+        return Math.abs(score) > WIN_SCORE / 2;
+    }
+
+    /**
+     * Scores a position the search will not look past, from the point of view of the player to
+     * move. The default asks the evaluator, or scores every such position as even if there is
+     * none; override this to score positions some other way.
+     * 
+     * The score must stay well inside +/- WIN_SCORE / 2 so it is never mistaken for a win.
+     * 
+     * @param game the position to score.
+     * @return the score of the position.
+     */
+    protected int evaluate(Connect4Game game)
+    {
+        return evaluator == null ? 0 : evaluator.evaluate(game);
+    }
+
+    /**
+     * Returns the negamax score of the position for the player to move.
+     * 
+     * @param game the position, which is left unchanged.
+     * @param depth the remaining number of moves to look ahead.
+     * @param alpha the score the player to move is already sure of.
+     * @param beta the score the opponent is already sure to hold the player to.
+     * @param ply the number of moves made since the root of the search.
+     * @return the score, exact if it lies strictly between alpha and beta, otherwise a bound.
+     */
+    private int negamax(Connect4Game game, int depth, int alpha, int beta, int ply)
+    {
+        nodeCount++;
+        if (nodeCount % CLOCK_CHECK_INTERVAL == 0
+            && (System.nanoTime() - deadline > 0 || isInterrupted()))
+        {
+            timeUp = true;
+        }
+        if (timeUp)
+        {
+            return 0;
+        }
+        int columns = game.getColumnCount();
+        for (int column = 0; column < columns; column++)
+        {
+            if (game.canPlay(column) && game.isWinningMove(column))
+            {
+                return WIN_SCORE - (ply + 1);
+            }
+        }
+        if (game.getMoveCount() >= columns * game.getRowCount() - 1)
+        {
+            return 0;   // the last move cannot win, as checked above
+        }
+        if (depth <= 0)
+        {
+            return evaluate(game);
+        }
+        // having no immediate win, the quickest win left is our move after next
+        int max = WIN_SCORE - (ply + 3);
+        if (beta > max)
+        {
+            beta = max;
+            if (alpha >= beta)
+            {
+                return beta;
+            }
+        }
+        long key = 0L;
+        int tableMove = -1;
+        if (table != null)
+        {
+            key = game.getHash();
+            long entry = table.probe(key);
+            tableProbes++;
+            if (entry != 0)
+            {
+                tableHits++;
+                tableMove = Connect4TranspositionTable.getMove(entry);
+            }
+            if (entry != 0 && Connect4TranspositionTable.getDepth(entry) >= depth)
+            {
+                int score = fromTable(Connect4TranspositionTable.getScore(entry), ply);
+                int bound = Connect4TranspositionTable.getBound(entry);
+                if (bound == Connect4TranspositionTable.EXACT)
+                {
+                    return score;
+                }
+                else if (bound == Connect4TranspositionTable.LOWER_BOUND)
+                {
+                    alpha = Math.max(alpha, score);
+                }
+                else
+                {
+                    beta = Math.min(beta, score);
+                }
+                if (alpha >= beta)
+                {
+                    return score;
+                }
+            }
+        }
+        int originalAlpha = alpha;
+        int best = -WIN_SCORE - 1;
+        int bestColumn = -1;
+        int[] moves = moveLists[ply];
+        int count = ordering.orderMoves(game, ply, tableMove, moves);
+        expandedNodes++;
+        for (int i = 0; i < count; i++)
+        {
+            int column = moves[i];
+            game.play(column);
+            int score = -negamax(game, depth - 1, -beta, -alpha, ply + 1);
+            game.undo();
+            if (score > best)
+            {
+                best = score;
+                bestColumn = column;
+                if (score > alpha)
+                {
+                    alpha = score;
+                    if (alpha >= beta)
+                    {
+                        if (!timeUp)
+                        {
+                            ordering.recordCutoff(game, ply, column, depth, i);
+                            cutoffs++;
+                            if (i == 0)
+                            {
+                                firstMoveCutoffs++;
+                            }
+                        }
+                        break;
+                    }
+                }
+            }
+        }
+        if (timeUp)
+        {
+            return 0;
+        }
+        if (table != null)
+        {
+            int bound;
+            if (best <= originalAlpha)
+            {
+                bound = Connect4TranspositionTable.UPPER_BOUND;
+            }
+            else if (best >= beta)
+            {
+                bound = Connect4TranspositionTable.LOWER_BOUND;
+            }
+            else
+            {
+                bound = Connect4TranspositionTable.EXACT;
+            }
+            table.store(key, depth, bound, toTable(best, ply), bestColumn);
+        }
+        return best;
+    }
+
+    /**
+     * Returns the move chosen, followed by the best moves the transposition table holds for the
+     * positions after it, up to the depth searched or a win.
+     */
+    private int[] principalVariation(Connect4Game game, int column)
+    {
+        int[] line = new int[Math.max(lastDepth, 1)];
+        int length = 0;
+        int played = 0;
+        int move = column;
+        while (move >= 0 && length < line.length && game.canPlay(move))
+        {
+            line[length++] = move;
+            if (game.isWinningMove(move) || table == null)
+            {
+                break;
+            }
+            game.play(move);
+            played++;
+            long entry = table.probe(game.getHash());
+            move = entry == 0 ? -1 : Connect4TranspositionTable.getMove(entry);
+        }
+        for (int i = 0; i < played; i++)
+        {
+            game.undo();
+        }
+        return Arrays.copyOf(line, length);
+    }
+
+    /**
+     * Returns the best move stored in the transposition table for the root, or -1 if none.
+     */
+    private int rootTableMove(Connect4Game game)
+    {
+        if (table == null)
+        {
+            return -1;
+        }
+        long entry = table.probe(game.getHash());
+        return entry == 0 ? -1 : Connect4TranspositionTable.getMove(entry);
+    }
+
+    /**
+     * Converts a score counted from the root of the search into one counted from the current
+     * position, so a win stored in the table means the same wherever the position is reached.
+     */
+    private static int toTable(int score, int ply)
+    {
+        if (isDecisive(score))
+        {
+            return score > 0 ? score + ply : score - ply;
+        }
+        return score;
+    }
+
+    /**
+     * Converts a score read from the table back into one counted from the root of the search.
+     */
+    private static int fromTable(int score, int ply)
+    {
+        if (isDecisive(score))
+        {
+            return score > 0 ? score - ply : score + ply;
+        }
+        return score;
+    }
+}
@@ -0,0 +1,273 @@
+/**
+ * What one Connect4Search found out, and what it cost to find: the move and its score, how many
+ * positions were visited and how fast, how deep the search got, how well the transposition
+ * table and the move ordering worked, and the line of play the search expects.
+ * 
+ * A search fills in its metrics as it goes, with counters cheap enough to leave on, and hands
+ * them out once the move is chosen through getLastMetrics(), or to its Connect4SearchMonitor.
+ * Metrics never change once made.
+ */
+public class Connect4SearchMetrics
+{
+    private final int column;
+    private final int score;
+    private final int depth;
+    private final boolean solved;
+    private final long nodes;
+    private final long nanos;
+    private final long tableProbes;
+    private final long tableHits;
+    private final long expandedNodes;
+    private final long cutoffs;
+    private final long firstMoveCutoffs;
+    private final long[] threadNodes;
+    private final long[] iterationNodes;
+    private final long[] iterationNanos;
+    private final int[] principalVariation;
+
+    /**
+     * Creates the metrics of a search.
+     * 
+     * @param column the move chosen.
+     * @param score the score of the move.
+     * @param depth the depth of the last iteration finished, or the number of empty slots if the
+     *        position was solved.
+     * @param solved true if the position was solved by a Connect4Solver instead of searched.
+     * @param counts the positions visited, transposition table probes, table hits, positions
+     *        whose moves were tried, beta cutoffs, and beta cutoffs by the first move tried.
+     * @param threadNodeCounts the positions visited by each thread, the calling thread's first.
+     * @param nanos the time the search took, in nanoseconds.
+     * @param iterationNodes the positions visited by each iteration finished, from depth 1 up.
+     * @param iterationNanos the time each iteration finished took, in nanoseconds.
+     * @param principalVariation the moves the search expects to be played, starting with column.
+     */
+    Connect4SearchMetrics(int column, int score, int depth, boolean solved, long[] counts,
+        long[] threadNodeCounts, long nanos, long[] iterationNodes, long[] iterationNanos, int[] principalVariation)
+    {
+        this.column = column;
+        this.score = score;
+        this.depth = depth;
+        this.solved = solved;
+        this.nodes = counts[0];
+        this.tableProbes = counts[1];
+        this.tableHits = counts[2];
+        this.expandedNodes = counts[3];
+        this.cutoffs = counts[4];
+        this.firstMoveCutoffs = counts[5];
+        this.threadNodes = threadNodeCounts;
+        this.nanos = nanos;
+        this.iterationNodes = iterationNodes;
+        this.iterationNanos = iterationNanos;
+        this.principalVariation = principalVariation;
+    }
+
+    /**
+     * Returns the move the search chose.
+     * 
+     * @return the column of the move.
+     */
+    public int getColumn()
+    {
+        return column;
+    }
+
+    /**
+     * Returns the score of the move the search chose.
+     * 
+     * @return the score, from the point of view of the player who was to move.
+     */
+    public int getScore()
+    {
+        return score;
+    }
+
+    /**
+     * Returns the depth of the last iteration the search finished.
+     * 
+     * @return the depth; the number of empty slots if the position was solved.
+     */
+    public int getDepth()
+    {
+        return depth;
+    }
+
+    /**
+     * Checks if the position was solved outright by a Connect4Solver. A solved search has no
+     * iterations, table or ordering statistics.
+     * 
+     * @return true if the position was solved.
+     */
+    public boolean isSolved()
+    {
+        return solved;
+    }
+
+    /**
+     * Returns the number of positions the search visited, on all its threads.
+     * 
+     * @return the node count.
+     */
+    public long getNodeCount()
+    {
+        return nodes;
+    }
+
+    /**
+     * Returns the number of positions each thread of the search visited, which add up to
+     * getNodeCount().
+     * 
+     * @return the node counts; the first is the calling thread's, the rest its helpers' or
+     *         workers'. A search on a single thread has only the first.
+     */
+    public long[] getThreadNodeCounts()
+    {
+        return threadNodes.clone();
+    }
+
+    /**
+     * Returns how long the search took.
+     * 
+     * @return the time, in nanoseconds.
+     */
+    public long getNanos()
+    {
+        return nanos;
+    }
+
+    /**
+     * Returns the number of positions visited per second.
+     * 
+     * @return the nodes per second, or 0 if the search took no measurable time.
+     */
+    public double getNodesPerSecond()
+    {
+        return nanos == 0 ? 0.0 : nodes * 1e9 / nanos;
+    }
+
+    /**
+     * Returns the number of positions the search looked up in its transposition table.
+     * 
+     * @return the number of probes.
+     */
+    public long getTableProbeCount()
+    {
+        return tableProbes;
+    }
+
+    /**
+     * Returns the fraction of transposition table probes that found the position.
+     * 
+     * @return the hit rate, or 0 if there were no probes.
+     */
+    public double getTableHitRate()
+    {
+        return tableProbes == 0 ? 0.0 : (double) tableHits / tableProbes;
+    }
+
+    /**
+     * Returns the fraction of the positions whose moves were tried that were cut off before
+     * every move had been tried.
+     * 
+     * @return the cutoff rate, or 0 if no position had its moves tried.
+     */
+    public double getCutoffRate()
+    {
+        return expandedNodes == 0 ? 0.0 : (double) cutoffs / expandedNodes;
+    }
+
+    /**
+     * Returns the fraction of cutoffs caused by the first move tried. The closer to 1, the better
+     * the move ordering.
+     * 
+     * @return the first-move cutoff rate, or 0 if there were no cutoffs.
+     */
+    public double getFirstMoveCutoffRate()
+    {
+        return cutoffs == 0 ? 0.0 : (double) firstMoveCutoffs / cutoffs;
+    }
+
+    /**
+     * Returns the effective branching factor: how many times more positions the last iteration
+     * visited than the one before it.
+     * 
+     * @return the branching factor, or 0 if the search finished fewer than two iterations.
+     */
+    public double getEffectiveBranchingFactor()
+    {
+        int last = iterationNodes.length - 1;
+        if (last < 1 || iterationNodes[last - 1] == 0)
+        {
+            return 0.0;
+        }
+        return (double) iterationNodes[last] / iterationNodes[last - 1];
+    }
+
+    /**
+     * Returns the number of positions each iteration visited. With a Connect4LazySmpSearch only
+     * the calling thread's positions are counted per iteration.
+     * 
+     * @return the node counts, the first for depth 1; empty if the position was solved.
+     */
+    public long[] getIterationNodeCounts()
+    {
+        return iterationNodes.clone();
+    }
+
+    /**
+     * Returns how long each iteration took.
+     * 
+     * @return the times in nanoseconds, the first for depth 1; empty if the position was solved.
+     */
+    public long[] getIterationNanos()
+    {
+        return iterationNanos.clone();
+    }
+
+    /**
+     * Returns the principal variation: the move chosen, followed by the best replies as far as
+     * the transposition table still holds them.
+     * 
+     * @return the columns of the moves, in the order they would be played.
+     */
+    public int[] getPrincipalVariation()
+    {
+        return principalVariation.clone();
+    }
+
+    /**
+     * Returns the metrics as one line, such as
+     *     move 3 score 12 depth 14 nodes 2104331 (4.2M/s) ebf 1.9 tt 61% cut 88%/93% pv 3 3 2 4
+     * where the cutoff figures are the cutoff rate and the first-move cutoff rate. A search on
+     * several threads also shows each thread's nodes, such as threads 1051210/1053121.
+     * 
+     * @return a summary of the metrics.
+     */
+    public String toString()
+    {
+        StringBuilder line = new StringBuilder();
+        line.append("move ").append(column).append(" score ").append(score);
+        line.append(solved ? " solved " : " depth ").append(depth);
+        line.append(" nodes ").append(nodes);
+        line.append(String.format(" (%.1fM/s)", getNodesPerSecond() / 1e6));
+        if (threadNodes.length > 1)
+        {
+            line.append(" threads ").append(threadNodes[0]);
+            for (int i = 1; i < threadNodes.length; i++)
+            {
+                line.append('/').append(threadNodes[i]);
+            }
+        }
+        if (!solved)
+        {
+            line.append(String.format(" ebf %.1f tt %.0f%% cut %.0f%%/%.0f%%",
+                getEffectiveBranchingFactor(), 100 * getTableHitRate(), 100 * getCutoffRate(),
+                100 * getFirstMoveCutoffRate()));
+        }
+        line.append(" pv");
+        for (int move : principalVariation)
+        {
+            line.append(' ').append(move);
+        }
+        return line.toString();
+    }
+}
@@ -0,0 +1,287 @@
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Collects the Connect4SearchMetrics of every search it is given to, so they can be watched
+ * while games are played:
+ * - programmatically, through the getters;
+ * - over JMX, once the monitor is registered with the platform MBean server;
+ * - in a report printed every so often by a background thread.
+ * 
+ * A search hands its metrics to its monitor, if it has one, when it finishes:
+ *     Connect4SearchMonitor monitor = Connect4SearchMonitor.getPlatformMonitor();
+ *     search.setMonitor(monitor);
+ *     monitor.startReporter(System.out, 10000);
+ * Recording a search takes a lock and a few additions, so one monitor can be shared by every
+ * search of every game, on any number of threads.
+ */
+public class Connect4SearchMonitor implements Connect4SearchMonitorMXBean
+{
+    /**
+     * The name the platform monitor is registered under.
+     */
+    public static final String PLATFORM_MONITOR_NAME = "Connect4:type=SearchMonitor";
+
+    private static Connect4SearchMonitor platformMonitor;
+
+    private long searches;
+    private long nodes;
+    private long nanos;
+    private long depths;
+    private Connect4SearchMetrics last;
+    private ScheduledExecutorService reporter;
+
+    /**
+     * Returns the monitor registered with the platform MBean server under PLATFORM_MONITOR_NAME,
+     * registering one the first time it is asked for. A monitor already registered under that
+     * name by another copy of this class, such as one loaded before BlueJ recompiled it, is
+     * replaced. If the monitor cannot be registered it still collects metrics, but cannot be
+     * watched over JMX; searches never fail for the want of a monitor.
+     * 
+     * @return the platform monitor.
+     */
+    public static synchronized Connect4SearchMonitor getPlatformMonitor()
+    {
+        if (platformMonitor == null)
+        {
+            platformMonitor = new Connect4SearchMonitor();
+            try
+            {
+                MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                ObjectName name = new ObjectName(PLATFORM_MONITOR_NAME);
+                if (server.isRegistered(name))
+                {
+                    server.unregisterMBean(name);
+                }
+                server.registerMBean(platformMonitor, name);
+            }
+            catch (JMException e)
+            {
+                // left unregistered
+            }
+            catch (SecurityException e)
+            {
+                // left unregistered
+            }
+        }
+        return platformMonitor;
+    }
+
+    /**
+     * Registers the monitor with the platform MBean server.
+     * 
+     * @param name the object name to register it under, such as "Connect4:type=SearchMonitor".
+     * @throws IllegalArgumentException if the name is not a valid object name or already taken.
+     */
+    public void register(String name)
+    {
+        try
+        {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(name));
+        }
+        catch (JMException e)
+        {
+            throw new IllegalArgumentException("Cannot register the monitor as " + name + ".", e);
+        }
+    }
+
+    /**
+     * Records the metrics of a finished search.
+     * 
+     * @param metrics the metrics.
+     */
+    public synchronized void record(Connect4SearchMetrics metrics)
+    {
+        searches++;
+        nodes += metrics.getNodeCount();
+        nanos += metrics.getNanos();
+        depths += metrics.getDepth();
+        last = metrics;
+    }
+
+    /**
+     * Returns the metrics of the last search recorded.
+     * 
+     * @return the metrics, or null if no search has been recorded.
+     */
+    public synchronized Connect4SearchMetrics getLastMetrics()
+    {
+        return last;
+    }
+
+    public synchronized long getSearchCount()
+    {
+        return searches;
+    }
+
+    public synchronized long getTotalNodeCount()
+    {
+        return nodes;
+    }
+
+    public synchronized long getTotalSearchMillis()
+    {
+        return nanos / 1000000;
+    }
+
+    public synchronized double getAverageNodesPerSecond()
+    {
+        return nanos == 0 ? 0.0 : nodes * 1e9 / nanos;
+    }
+
+    public synchronized double getAverageDepth()
+    {
+        return searches == 0 ? 0.0 : (double) depths / searches;
+    }
+
+    public synchronized int getLastDepth()
+    {
+        return last == null ? 0 : last.getDepth();
+    }
+
+    public synchronized int getLastScore()
+    {
+        return last == null ? 0 : last.getScore();
+    }
+
+    public synchronized double getLastNodesPerSecond()
+    {
+        return last == null ? 0.0 : last.getNodesPerSecond();
+    }
+
+    public synchronized double getLastEffectiveBranchingFactor()
+    {
+        return last == null ? 0.0 : last.getEffectiveBranchingFactor();
+    }
+
+    public synchronized double getLastTableHitRate()
+    {
+        return last == null ? 0.0 : last.getTableHitRate();
+    }
+
+    public synchronized double getLastCutoffRate()
+    {
+        return last == null ? 0.0 : last.getCutoffRate();
+    }
+
+    public synchronized double getLastFirstMoveCutoffRate()
+    {
+        return last == null ? 0.0 : last.getFirstMoveCutoffRate();
+    }
+
+    public synchronized double[] getLastIterationMillis()
+    {
+        if (last == null)
+        {
+            return new double[0];
+        }
+        long[] iterationNanos = last.getIterationNanos();
+        double[] millis = new double[iterationNanos.length];
+        for (int i = 0; i < millis.length; i++)
+        {
+            millis[i] = iterationNanos[i] / 1e6;
+        }
+        return millis;
+    }
+
+    public synchronized String getLastPrincipalVariation()
+    {
+        if (last == null)
+        {
+            return "";
+        }
+        StringBuilder line = new StringBuilder();
+        for (int move : last.getPrincipalVariation())
+        {
+            if (line.length() > 0)
+            {
+                line.append(' ');
+            }
+            line.append(move);
+        }
+        return line.toString();
+    }
+
+    public synchronized void reset()
+    {
+        searches = 0;
+        nodes = 0;
+        nanos = 0;
+        depths = 0;
+        last = null;
+    }
+
+    /**
+     * Starts printing a report every so often on a background thread: the searches recorded
+     * since the last report, their speed and average depth, and the last search's metrics.
+     * Nothing is printed when there were no searches. Any reporter already running is stopped.
+     * 
+     * @param out where to print the reports.
+     * @param periodMillis the time between reports, in milliseconds.
+     */
+    public synchronized void startReporter(final PrintStream out, long periodMillis)
+    {
+        stopReporter();
+        reporter = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+        {
+            public Thread newThread(Runnable task)
+            {
+                Thread thread = new Thread(task, "Connect4SearchMonitor reporter");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        reporter.scheduleAtFixedRate(new Runnable()
+        {
+            private long reportedSearches;
+            private long reportedNodes;
+            private long reportedNanos;
+            private long reportedDepths;
+
+            public void run()
+            {
+                String report;
+                synchronized (Connect4SearchMonitor.this)
+                {
+                    if (searches < reportedSearches)
+                    {
+                        reportedSearches = reportedNodes = reportedNanos = reportedDepths = 0;
+                    }
+                    long count = searches - reportedSearches;
+                    if (count == 0)
+                    {
+                        return;
+                    }
+                    long newNanos = nanos - reportedNanos;
+                    report = String.format("%d searches, %.1fM nodes/s, depth %.1f; last: %s",
+                        count, newNanos == 0 ? 0.0 : (nodes - reportedNodes) * 1e3 / newNanos,
+                        (double) (depths - reportedDepths) / count, last);
+                    reportedSearches = searches;
+                    reportedNodes = nodes;
+                    reportedNanos = nanos;
+                    reportedDepths = depths;
+                }
+                out.println(report);
+            }
+        }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops printing reports, if they were started.
+     */
+    public synchronized void stopReporter()
+    {
+        if (reporter != null)
+        {
+            reporter.shutdownNow();
+            reporter = null;
+        }
+    }
+}
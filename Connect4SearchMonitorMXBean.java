@@ -0,0 +1,110 @@
+/**
+ * The management interface of a Connect4SearchMonitor, as shown by JConsole, VisualVM and other
+ * JMX clients. The totals count every search recorded since the monitor was made or reset; the
+ * other attributes describe the last search.
+ */
+public interface Connect4SearchMonitorMXBean
+{
+    /**
+     * Returns the number of searches recorded.
+     * 
+     * @return the search count.
+     */
+    long getSearchCount();
+
+    /**
+     * Returns the number of positions visited by all the searches recorded.
+     * 
+     * @return the total node count.
+     */
+    long getTotalNodeCount();
+
+    /**
+     * Returns the time taken by all the searches recorded.
+     * 
+     * @return the total time, in milliseconds.
+     */
+    long getTotalSearchMillis();
+
+    /**
+     * Returns the number of positions visited per second over all the searches recorded.
+     * 
+     * @return the average nodes per second.
+     */
+    double getAverageNodesPerSecond();
+
+    /**
+     * Returns the average depth reached by the searches recorded.
+     * 
+     * @return the average depth.
+     */
+    double getAverageDepth();
+
+    /**
+     * Returns the depth reached by the last search.
+     * 
+     * @return the depth.
+     */
+    int getLastDepth();
+
+    /**
+     * Returns the score of the move chosen by the last search.
+     * 
+     * @return the score.
+     */
+    int getLastScore();
+
+    /**
+     * Returns the number of positions the last search visited per second.
+     * 
+     * @return the nodes per second.
+     */
+    double getLastNodesPerSecond();
+
+    /**
+     * Returns the effective branching factor of the last search.
+     * 
+     * @return the branching factor.
+     */
+    double getLastEffectiveBranchingFactor();
+
+    /**
+     * Returns the transposition table hit rate of the last search.
+     * 
+     * @return the hit rate, from 0 to 1.
+     */
+    double getLastTableHitRate();
+
+    /**
+     * Returns the cutoff rate of the last search.
+     * 
+     * @return the cutoff rate, from 0 to 1.
+     */
+    double getLastCutoffRate();
+
+    /**
+     * Returns the first-move cutoff rate of the last search.
+     * 
+     * @return the first-move cutoff rate, from 0 to 1.
+     */
+    double getLastFirstMoveCutoffRate();
+
+    /**
+     * Returns how long each iteration of the last search took.
+     * 
+     * @return the times in milliseconds, the first for depth 1.
+     */
+    double[] getLastIterationMillis();
+
+    /**
+     * Returns the principal variation of the last search.
+     * 
+     * @return the columns of the moves, separated by spaces.
+     */
+    String getLastPrincipalVariation();
+
+    /**
+     * Forgets every search recorded.
+     */
+    void reset();
+}
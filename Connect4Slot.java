@@ -2,13 +2,16 @@
  * A single slot in a Connect 4 board. A slot can be either empty or filled, and it can
  * be filled with either a red token or a yellow token.
  * 
+ * A slot is a view of one position of the game board; its state is stored in the game it
+ * belongs to.
+ * 
  * You should not modify this class, but you will need to use methods within it.
  */
 public class Connect4Slot
 {
-    private boolean isFilled;
-    private boolean isRed;
-    private boolean isHighlighted;
+    private Connect4Game game;
+    private int column;
+    private int row;
     
     /**
      * Creates a new Connect4Slot, initially unfilled.
@@ -17,8 +20,7 @@ public class Connect4Slot
      */
     public Connect4Slot()
     {
-        this.isFilled = false;
-        this.isRed = false;
+        this(new Connect4Game(1, 1), 0, 0);
     }
     /**
      * Copies the given slot.
@@ -29,8 +31,26 @@ public class Connect4Slot
      */
     public Connect4Slot(Connect4Slot slot)
     {
-        this.isFilled = slot.getIsFilled();
-        this.isRed = slot.getIsRed();
+        this();
+        if (slot.getIsFilled())
+        {
+            game.addToken(column, row, slot.getIsRed());
+        }
+    }
+    /**
+     * Creates the view of one slot of a game.
+     * 
+     * Your agent will not need to use this method.
+     * 
+     * @param game the game the slot belongs to.
+     * @param column the column of the slot.
+     * @param row the row of the slot.
+     */
+    Connect4Slot(Connect4Game game, int column, int row)
+    {
+        this.game = game;
+        this.column = column;
+        this.row = row;
     }
     /**
      * Checks if the slot is currently filled.
@@ -41,7 +61,7 @@ public class Connect4Slot
      */
     public boolean getIsFilled()
     {
-        return isFilled;
+        return game.isFilled(column, row);
     }
     /**
      * If the slot is filled, checks if the token in the slot is red.
@@ -55,7 +75,7 @@ public class Connect4Slot
      */
     public boolean getIsRed()
     {
-        return isRed;
+        return game.isRed(column, row);
     }
     /**
      * If the slot is currently empty, adds a red token to it.
@@ -64,11 +84,7 @@ public class Connect4Slot
      */
     public void addRed()
     {
-        if (!isFilled)
-        {
-            this.isFilled = true;
-            this.isRed = true;
-        }
+        game.addToken(column, row, true);
     }
     /**
      * If the slot is currently empty, adds a yellow token to it.
@@ -77,11 +93,7 @@ public class Connect4Slot
      */
     public void addYellow()
     {
-        if (!isFilled)
-        {
-            this.isFilled = true;
-            this.isRed = false;
-        }
+        game.addToken(column, row, false);
     }
     
     /**
@@ -93,7 +105,7 @@ public class Connect4Slot
      */
     public boolean getIsHighlighted()
     {
-        return isHighlighted;
+        return game.isHighlighted(column, row);
     }
     /**
      * Highlights the slot.
@@ -102,7 +114,7 @@ public class Connect4Slot
      */
     public void highlight()
     {
-        this.isHighlighted = true;
+        game.highlightSlot(row, column);
     }
     /**
      * Clears the slot.
@@ -111,8 +123,6 @@ public class Connect4Slot
      */
     public void clear()
     {
-        this.isFilled = false;
-        this.isRed = false;
-        this.isHighlighted = false;
+        game.clearSlot(column, row);
     }
 }
@@ -0,0 +1,461 @@
+/**
+ * Solves Connect 4 positions outright: finds whether the player to move wins, draws or loses
+ * with best play, how many moves it takes, and a move that gets that result.
+ * 
+ * The solver works straight on the bitboards of Connect4Game and is much faster than
+ * Connect4Search for the last part of a game:
+ * - Moves are generated as bitboards. A move that lets the opponent win at once is never tried,
+ *   a threat of the opponent's that is playable must be blocked, and two of them lose.
+ * - Moves that make the most new threats are tried first.
+ * - Every search is a null-window search, which only asks whether the score is above or below a
+ *   given value. The exact score is found by narrowing down the range of possible scores, trying
+ *   0 first so a win, draw or loss is known after at most two searches.
+ * - Upper bounds found by earlier searches are kept in a table, keyed by the exact position.
+ * 
+ * Scores use the same scale as Connect4Search: WIN_SCORE minus the number of moves to win, the
+ * negative of that for a loss, and 0 for a draw. Boards must fit the bitboard of Connect4Game
+ * with room for the shifts the threat detection makes; see canSolve().
+ * 
+ * A solve can be given a deadline, and can be stopped from another thread with stop() or by
+ * interrupting the thread it runs on. A solve cut short that way gives up without a move, and
+ * leaves in the table only the bounds it had already proved.
+ */
+public class Connect4Solver
+{
+    /**
+     * The number of entries in the table of a solver created with no capacity given.
+     */
+    public static final int DEFAULT_TABLE_CAPACITY = 1 << 20;
+
+    private static final int BOUND_OFFSET = 128;    // stored bounds are offset so 0 means empty
+    private static final long KEY_MULTIPLIER = 0x9E3779B97F4A7C15L;
+    // how many nodes to visit between looks at the clock; a power of two
+    private static final int CLOCK_CHECK_INTERVAL = 1024;
+
+    private final long[] keys;
+    private final short[] bounds;
+    private final int indexShift;
+
+    private int numCols;
+    private int numRows;
+    private int winLength;
+    private int cells;
+    private long bottomMask;
+    private long boardMask;
+    private long[] columnMasks = new long[0];
+    private long[] runs = new long[0];      // scratch space for finding winning slots
+    private long[][] moveLists = new long[0][];     // the ordered moves of each move count
+    private int[][] moveScores = new int[0][];
+    private long nodeCount;
+    private int lastScore;
+    private long deadline;      // System.nanoTime() at which to give up
+    private volatile boolean stopped;   // set once the deadline has passed, or by stop()
+
+    /**
+     * Creates a solver with a table of DEFAULT_TABLE_CAPACITY entries.
+     */
+    public Connect4Solver()
+    {
+        this(DEFAULT_TABLE_CAPACITY);
+    }
+
+    /**
+     * Creates a solver.
+     * 
+     * @param capacity the number of entries in the solver's table; rounded down to a power of two.
+     */
+    public Connect4Solver(int capacity)
+    {
+        if (capacity < 1)
+        {
+            throw new IllegalArgumentException("A solver table needs at least one entry.");
+        }
+        capacity = Integer.highestOneBit(capacity);
+        keys = new long[capacity];
+        bounds = new short[capacity];
+        indexShift = 64 - Integer.numberOfTrailingZeros(capacity);
+    }
+
+    /**
+     * Checks if a game's board is one the solver can work on. The whole board must fit in a
+     * single bitboard word, and the threat detection shifts it by up to getWinLength() - 1
+     * columns or diagonal steps, which for four in a row needs at most 19 rows.
+     * 
+     * @param game the game.
+     * @return true if solve() can be used on the game.
+     */
+    public static boolean canSolve(Connect4Game game)
+    {
+        return game.getWordCount() == 1
+            && (game.getWinLength() - 1) * (game.getRowCount() + 2) < Long.SIZE;
+    }
+
+    /**
+     * Solves a position and returns the best move for the player whose turn it is: the quickest
+     * win, or else a draw, or else the slowest loss. getLastScore() then returns its score.
+     * 
+     * @param game the position, which is left unchanged; it must have at least one open slot
+     *        and no winner.
+     * @return the column of the best move, or -1 if the solve was stopped.
+     */
+    public int solve(Connect4Game game)
+    {
+        return solve(game, Long.MAX_VALUE);
+    }
+
+    /**
+     * Solves a position like solve(game), but gives up once the deadline has passed.
+     * 
+     * @param game the position, which is left unchanged; it must have at least one open slot
+     *        and no winner.
+     * @param deadline the System.nanoTime() at which to give up; Long.MAX_VALUE for none.
+     * @return the column of the best move, or -1 if the solve ran out of time or was stopped.
+     */
+    public int solve(Connect4Game game, long deadline)
+    {
+        if (!canSolve(game))
+        {
+            throw new IllegalArgumentException("The solver cannot work on boards over 64 bits, or too high for lines of " + game.getWinLength() + ".");
+        }
+        prepare(game);
+        nodeCount = 0;
+        this.deadline = deadline;
+        stopped = false;
+        int moves = game.getMoveCount();
+        long mask = game.getFilledBits();
+        long current = game.isRedToMove() ? game.getRedBits() : game.getYellowBits();
+        long playable = possible(mask);
+
+        long wins = winningSlots(current, mask) & playable;
+        if (wins != 0)
+        {
+            lastScore = Connect4Search.WIN_SCORE - 1;
+            return columnOf(wins);
+        }
+
+        // narrow the range of scores down with null-window searches until it is a single score
+        int min = Math.min(-(cells - moves - 1), 0);
+        int max = Math.max(cells - moves - 2, 0);
+        while (min < max)
+        {
+            int middle = min + (max - min) / 2;
+            if (middle <= 0 && min / 2 < middle)
+            {
+                middle = min / 2;
+            }
+            else if (middle >= 0 && max / 2 > middle)
+            {
+                middle = max / 2;
+            }
+            int score = negamax(current, mask, moves, middle, middle + 1);
+            if (stopped)
+            {
+                return -1;
+            }
+            if (score <= middle)
+            {
+                max = score;
+            }
+            else
+            {
+                min = score;
+            }
+        }
+        int value = min;
+        lastScore = toSearchScore(value, moves);
+
+        // the first move, in the usual order, that scores as well as the position
+        long opponent = current ^ mask;
+        int count = orderMoves(current, mask, moves, playable);
+        for (int i = 0; i < count; i++)
+        {
+            long move = moveLists[moves][i];
+            long childMask = mask | move;
+            int score;
+            if ((winningSlots(opponent, childMask) & possible(childMask)) != 0)
+            {
+                score = -(cells - moves - 1);    // the opponent wins on the next move
+            }
+            else
+            {
+                score = -negamax(opponent, childMask, moves + 1, -value, -value + 1);
+                if (stopped)
+                {
+                    return -1;
+                }
+            }
+            if (score >= value)
+            {
+                return columnOf(move);
+            }
+        }
+        return columnOf(moveLists[moves][0]);
+    }
+
+    /**
+     * Returns the score of the move chosen by the last call to solve().
+     * 
+     * @return the score, from the point of view of the player who was to move.
+     */
+    public int getLastScore()
+    {
+        return lastScore;
+    }
+
+    /**
+     * Returns the number of positions visited by the last call to solve().
+     * 
+     * @return the node count.
+     */
+    public long getNodeCount()
+    {
+        return nodeCount;
+    }
+
+    /**
+     * Stops the solve in progress, which then returns -1. Safe to call from another thread.
+     */
+    public void stop()
+    {
+        stopped = true;
+    }
+
+    /**
+     * Empties the table.
+     */
+    public void clear()
+    {
+        java.util.Arrays.fill(keys, 0L);
+        java.util.Arrays.fill(bounds, (short) 0);
+    }
+
+    /**
+     * Returns the score of a position for the player to move, who must not be able to win at
+     * once. Inside the solver, a score is the number of slots left empty after the winning move,
+     * plus one; so the sooner the win, the higher the score, and a loss is the negative of the
+     * opponent's score.
+     * 
+     * @param current the tokens of the player to move.
+     * @param mask all the tokens.
+     * @param moves the number of tokens.
+     * @return the score, exact if it lies strictly between alpha and beta, otherwise a bound;
+     *         meaningless once the solve has been stopped.
+     */
+    private int negamax(long current, long mask, int moves, int alpha, int beta)
+    {
+        nodeCount++;
+        if ((nodeCount & (CLOCK_CHECK_INTERVAL - 1)) == 0
+            && (System.nanoTime() - deadline > 0 || Thread.currentThread().isInterrupted()))
+        {
+            stopped = true;
+        }
+        if (stopped)
+        {
+            return 0;
+        }
+        long playable = possible(mask);
+        long opponent = current ^ mask;
+        long opponentWins = winningSlots(opponent, mask);
+        long forced = playable & opponentWins;
+        if (forced != 0)
+        {
+            if ((forced & (forced - 1)) != 0)
+            {
+                return -(cells - moves - 1);    // two threats to block; the opponent wins next
+            }
+            playable = forced;
+        }
+        // never play just below one of the opponent's winning slots
+        playable &= ~(opponentWins >>> 1);
+        if (playable == 0)
+        {
+            return -(cells - moves - 1);
+        }
+        if (moves >= cells - 2)
+        {
+            return 0;   // neither player can win with the last two slots
+        }
+
+        // the opponent cannot win on the next move, nor this player on this one
+        int min = -(cells - moves - 3);
+        if (alpha < min)
+        {
+            alpha = min;
+            if (alpha >= beta)
+            {
+                return alpha;
+            }
+        }
+        int max = cells - moves - 2;
+        long key = current + mask;
+        int index = (int) ((key * KEY_MULTIPLIER) >>> indexShift);
+        if (keys[index] == key && bounds[index] != 0)
+        {
+            max = Math.min(max, bounds[index] - BOUND_OFFSET);
+        }
+        if (beta > max)
+        {
+            beta = max;
+            if (alpha >= beta)
+            {
+                return beta;
+            }
+        }
+
+        int count = orderMoves(current, mask, moves, playable);
+        long[] list = moveLists[moves];
+        for (int i = 0; i < count; i++)
+        {
+            int score = -negamax(opponent, mask | list[i], moves + 1, -beta, -alpha);
+            if (stopped)
+            {
+                return 0;   // the score is not proved, so it is not stored either
+            }
+            if (score >= beta)
+            {
+                return score;
+            }
+            if (score > alpha)
+            {
+                alpha = score;
+            }
+        }
+        keys[index] = key;
+        bounds[index] = (short) (alpha + BOUND_OFFSET);
+        return alpha;
+    }
+
+    /**
+     * Fills the move list for a move count with the given moves, the ones that make the most
+     * new threats first, and center columns before outer ones among equals.
+     * 
+     * @return the number of moves.
+     */
+    private int orderMoves(long current, long mask, int moves, long playable)
+    {
+        long[] list = moveLists[moves];
+        int[] scores = moveScores[moves];
+        int count = 0;
+        for (int i = 0; i < numCols; i++)
+        {
+            int column = numCols / 2 + (1 - 2 * (i & 1)) * ((i + 1) / 2);
+            long move = playable & columnMasks[column];
+            if (move == 0)
+            {
+                continue;
+            }
+            int score = Long.bitCount(winningSlots(current | move, mask));
+            int j = count - 1;
+            while (j >= 0 && scores[j] < score)
+            {
+                list[j + 1] = list[j];
+                scores[j + 1] = scores[j];
+                j--;
+            }
+            list[j + 1] = move;
+            scores[j + 1] = score;
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Returns the empty slots that would complete a line of winLength tokens for the given tokens.
+     */
+    private long winningSlots(long tokens, long mask)
+    {
+        int h = numRows;
+        // down
+        long slots = tokens << 1;
+        for (int k = 2; k < winLength; k++)
+        {
+            slots &= tokens << k;
+        }
+        // across, then the two diagonals, with the slot anywhere along the line: runs[k] marks
+        // the slots with k tokens in a row at higher bits, and below those with k at lower bits
+        for (int step = h; step <= h + 2; step++)
+        {
+            long run = -1L;
+            for (int k = 1; k < winLength; k++)
+            {
+                run &= tokens >>> k * step;
+                runs[k] = run;
+            }
+            slots |= run;
+            long below = -1L;
+            for (int k = 1; k < winLength; k++)
+            {
+                below &= tokens << k * step;
+                slots |= below & runs[winLength - 1 - k];
+            }
+        }
+        return slots & (boardMask ^ mask);
+    }
+
+    /**
+     * Returns the slots a token can be dropped into.
+     */
+    private long possible(long mask)
+    {
+        return (mask + bottomMask) & boardMask;
+    }
+
+    /**
+     * Returns the column of a move's slot.
+     */
+    private int columnOf(long move)
+    {
+        return Long.numberOfTrailingZeros(move) / (numRows + 1);
+    }
+
+    /**
+     * Converts a score of the solver into one of Connect4Search.
+     */
+    private int toSearchScore(int value, int moves)
+    {
+        if (value == 0)
+        {
+            return 0;
+        }
+        // the number of tokens on the board after the last move of the game
+        int end = cells + 1 - Math.abs(value);
+        int score = Connect4Search.WIN_SCORE - (end - moves);
+        return value > 0 ? score : -score;
+    }
+
+    /**
+     * Works out the masks for the size of a game's board, if it differs from the last one.
+     */
+    private void prepare(Connect4Game game)
+    {
+        if (game.getColumnCount() == numCols && game.getRowCount() == numRows
+            && game.getWinLength() == winLength)
+        {
+            return;
+        }
+        if (numCols != 0)
+        {
+            clear();    // a new table is empty already, and clearing it costs a move's time
+        }
+        numCols = game.getColumnCount();
+        numRows = game.getRowCount();
+        winLength = game.getWinLength();
+        cells = numCols * numRows;
+        bottomMask = 0L;
+        boardMask = 0L;
+        columnMasks = new long[numCols];
+        for (int i = 0; i < numCols; i++)
+        {
+            for (int j = 0; j < numRows; j++)
+            {
+                columnMasks[i] |= game.getSlotBit(i, j);
+            }
+            bottomMask |= game.getSlotBit(i, numRows - 1);
+            boardMask |= columnMasks[i];
+        }
+        runs = new long[winLength];
+        runs[0] = -1L;
+        moveLists = new long[cells + 1][numCols];
+        moveScores = new int[cells + 1][numCols];
+    }
+}
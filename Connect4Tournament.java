@@ -0,0 +1,593 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A tournament between any number of agents, played without a window:
+ *     java Connect4Tournament round-robin|swiss max-games-per-pairing AgentClass AgentClass...
+ * 
+ * A round robin pairs every agent with every other. A Swiss tournament plays a number of
+ * rounds instead; each round pairs agents with close ratings that have not met yet, and if the
+ * number of agents is odd, the lowest one not yet left out sits the round out.
+ * 
+ * Each pairing is a match played by Connect4MatchRunner, in batches of games played at the
+ * same time, with colors and the first move swapped within every four games. Agents added by
+ * class search on Connect4MatchRunner.searchThreadsFor() that many games, unless told otherwise. After each batch
+ * the match is tested with the SPRT, and it stops early once the test says which of its two
+ * hypotheses holds: by default, that the first agent of the pairing is no stronger than the
+ * second, or that it is at least 20 Elo stronger. Otherwise it stops at the maximum number of
+ * games.
+ * 
+ * At the end every agent gets an Elo rating, fitted to all the games played, with 0 the average.
+ */
+public class Connect4Tournament
+{
+    /**
+     * How agents are paired.
+     */
+    public enum Format
+    {
+        /** Every agent plays every other once. */
+        ROUND_ROBIN,
+        /** Agents with close ratings play each other, for a number of rounds. */
+        SWISS
+    }
+
+    private final List<String> names = new ArrayList<String>();
+    private final List<Connect4AgentFactory> factories = new ArrayList<Connect4AgentFactory>();
+    private final List<Class<? extends Agent>> types = new ArrayList<Class<? extends Agent>>();
+    private int numCols = 7;
+    private int numRows = 6;
+    private int winLength = Connect4Game.DEFAULT_WIN_LENGTH;
+    private int threadCount = Runtime.getRuntime().availableProcessors();
+    private int searchThreadCount;  // 0 to share the processors out between the games
+    private boolean lazySmp;
+    private Connect4Clock timeControl = new Connect4Clock();
+    private int maxGames = 200;
+    private int swissRounds = 5;
+    private boolean useSprt = true;
+    private double elo0 = 0;
+    private double elo1 = 20;
+    private double alpha = 0.05;
+    private double beta = 0.05;
+    private Connect4MatchResult[][] results = new Connect4MatchResult[0][0];
+
+    /**
+     * Adds an agent to the tournament.
+     * 
+     * @param name the name to show in the standings.
+     * @param factory creates the agent for each game.
+     */
+    public void addAgent(String name, Connect4AgentFactory factory)
+    {
+        names.add(name);
+        factories.add(factory);
+        types.add(null);
+    }
+
+    /**
+     * Adds an agent class to the tournament, under its class name. The class needs the usual
+     * constructor, or one that also takes the number of threads to search on.
+     * 
+     * @param type the agent class.
+     */
+    public void addAgent(Class<? extends Agent> type)
+    {
+        addAgent(type.getName(), Connect4MatchRunner.factoryFor(type));
+        types.set(types.size() - 1, type);
+    }
+
+    /**
+     * Sets the size of the board.
+     * 
+     * @param columns the number of columns.
+     * @param rows the number of rows.
+     */
+    public void setBoardSize(int columns, int rows)
+    {
+        this.numCols = columns;
+        this.numRows = rows;
+    }
+
+    /**
+     * Sets the number of tokens in a line that wins a game. The default is four.
+     * 
+     * @param winLength the win length, from 2 to 64.
+     */
+    public void setWinLength(int winLength)
+    {
+        this.winLength = winLength;
+    }
+
+    /**
+     * Sets the number of games played at the same time. The default is one per processor.
+     * 
+     * @param threadCount the number of threads to play games on, at least 1.
+     */
+    public void setThreadCount(int threadCount)
+    {
+        this.threadCount = threadCount;
+    }
+
+    /**
+     * Sets the number of threads each agent added by class searches on, if its class has a
+     * constructor taking one. By default the processors are shared out between the games played
+     * at the same time.
+     * 
+     * @param searchThreadCount the number of search threads per agent, at least 1, or 0 for the
+     *        default.
+     */
+    public void setSearchThreadCount(int searchThreadCount)
+    {
+        this.searchThreadCount = searchThreadCount;
+    }
+
+    /**
+     * Chooses how agents added by class share out their search between their threads, if their
+     * class has a constructor for it, as Connect4MatchRunner.factoryFor() describes.
+     * 
+     * @param lazySmp true to search with Lazy SMP, false to split the root moves.
+     */
+    public void setLazySmp(boolean lazySmp)
+    {
+        this.lazySmp = lazySmp;
+    }
+
+    /**
+     * Sets the time control of the games. There is no time limit unless one is set.
+     * 
+     * @param timeControl a clock with the time control; each game gets a copy of it.
+     */
+    public void setClock(Connect4Clock timeControl)
+    {
+        this.timeControl = timeControl;
+    }
+
+    /**
+     * Sets the greatest number of games a pairing plays. It is rounded up to a multiple of four,
+     * so colors and first moves stay balanced.
+     * 
+     * @param maxGames the number of games to play if the SPRT does not stop the pairing first.
+     */
+    public void setMaxGames(int maxGames)
+    {
+        this.maxGames = (maxGames + 3) / 4 * 4;
+    }
+
+    /**
+     * Sets the number of rounds of a Swiss tournament.
+     * 
+     * @param swissRounds the number of rounds.
+     */
+    public void setSwissRounds(int swissRounds)
+    {
+        this.swissRounds = swissRounds;
+    }
+
+    /**
+     * Sets up the SPRT that stops pairings early, or turns it off.
+     * 
+     * @param useSprt false to always play the greatest number of games.
+     * @param elo0 the Elo difference of the null hypothesis.
+     * @param elo1 the Elo difference of the alternative hypothesis, greater than elo0.
+     * @param alpha the chance of accepting elo1 when elo0 is true.
+     * @param beta the chance of accepting elo0 when elo1 is true.
+     */
+    public void setSprt(boolean useSprt, double elo0, double elo1, double alpha, double beta)
+    {
+        this.useSprt = useSprt;
+        this.elo0 = elo0;
+        this.elo1 = elo1;
+        this.alpha = alpha;
+        this.beta = beta;
+    }
+
+    /**
+     * Plays the tournament. Results of an earlier tournament are thrown away.
+     * 
+     * @param format how to pair the agents.
+     */
+    public void play(Format format)
+    {
+        int agents = names.size();
+        results = new Connect4MatchResult[agents][agents];
+        if (format == Format.ROUND_ROBIN)
+        {
+            for (int i = 0; i < agents; i++)
+            {
+                for (int j = i + 1; j < agents; j++)
+                {
+                    playPairing(i, j);
+                }
+            }
+            return;
+        }
+        boolean[] satOut = new boolean[agents];
+        for (int round = 0; round < swissRounds; round++)
+        {
+            for (int[] pairing : swissPairings(satOut))
+            {
+                playPairing(pairing[0], pairing[1]);
+            }
+        }
+    }
+
+    /**
+     * Returns the results of the games between two agents.
+     * 
+     * @param first the index of one agent, in the order they were added.
+     * @param second the index of the other agent.
+     * @return the results from the first agent's point of view; null if they did not meet.
+     */
+    public Connect4MatchResult getResult(int first, int second)
+    {
+        return results[first][second];
+    }
+
+    /**
+     * Returns the Elo ratings of the agents, fitted to every game played.
+     * 
+     * The ratings are the maximum likelihood fit of the Bradley-Terry model, counting a draw as
+     * half a win for each side. So that an agent that won or lost every game still gets a finite
+     * rating, each pairing counts one extra drawn game.
+     * 
+     * @return the ratings, in the order the agents were added, averaging 0.
+     */
+    public double[] getRatings()
+    {
+        int agents = names.size();
+        double[] points = new double[agents];
+        double[][] games = new double[agents][agents];
+        for (int i = 0; i < agents; i++)
+        {
+            for (int j = 0; j < agents; j++)
+            {
+                Connect4MatchResult result = results[i][j];
+                if (result != null && result.getGameCount() > 0)
+                {
+                    int played = result.getGameCount() + 1;
+                    double score = result.getWins() + 0.5 * result.getDraws() + 0.5;
+                    games[i][j] += played;
+                    games[j][i] += played;
+                    points[i] += score;
+                    points[j] += played - score;
+                }
+            }
+        }
+
+        // minorization-maximization; the strengths converge to the maximum likelihood fit
+        double[] strengths = new double[agents];
+        Arrays.fill(strengths, 1.0);
+        for (int iteration = 0; iteration < 1000; iteration++)
+        {
+            double change = 0;
+            for (int i = 0; i < agents; i++)
+            {
+                double sum = 0;
+                for (int j = 0; j < agents; j++)
+                {
+                    if (games[i][j] > 0)
+                    {
+                        sum += games[i][j] / (strengths[i] + strengths[j]);
+                    }
+                }
+                if (sum > 0)
+                {
+                    double strength = points[i] / sum;
+                    change = Math.max(change, Math.abs(strength - strengths[i]) / strengths[i]);
+                    strengths[i] = strength;
+                }
+            }
+            if (change < 1e-9)
+            {
+                break;
+            }
+        }
+
+        double[] ratings = new double[agents];
+        double mean = 0;
+        for (int i = 0; i < agents; i++)
+        {
+            ratings[i] = 400.0 * Math.log10(strengths[i]);
+            mean += ratings[i] / agents;
+        }
+        for (int i = 0; i < agents; i++)
+        {
+            ratings[i] -= mean;
+        }
+        return ratings;
+    }
+
+    /**
+     * Describes the standings: every agent's games, score and rating, best first, and the
+     * result of every pairing.
+     * 
+     * The error of a rating is the half-width of the 95% confidence interval of the agent's
+     * performance over all its games, taken as a whole.
+     * 
+     * @return the standings, one line per agent, then one line per pairing.
+     */
+    public String getStandings()
+    {
+        int agents = names.size();
+        double[] ratings = getRatings();
+        Integer[] order = new Integer[agents];
+        for (int i = 0; i < agents; i++)
+        {
+            order[i] = i;
+        }
+        final double[] sortBy = ratings;
+        Arrays.sort(order, new Comparator<Integer>()
+        {
+            public int compare(Integer a, Integer b)
+            {
+                return Double.compare(sortBy[b], sortBy[a]);
+            }
+        });
+
+        StringBuilder text = new StringBuilder();
+        text.append(String.format("%-4s %-30s %6s %7s %6s %8s%n", "Rank", "Agent", "Games", "Points",
+            "Score", "Elo"));
+        for (int rank = 0; rank < agents; rank++)
+        {
+            int i = order[rank];
+            int[] record = record(i);
+            int games = record[0] + record[1] + record[2];
+            double[] interval = Connect4Elo.eloInterval(record[0], record[1], record[2], 1.96);
+            text.append(String.format("%-4d %-30s %6d %7.1f %5.1f%% %8.1f +/- %.1f%n", rank + 1,
+                names.get(i), games, record[0] + 0.5 * record[2],
+                games == 0 ? 0.0 : 100.0 * (record[0] + 0.5 * record[2]) / games, ratings[i],
+                (interval[1] - interval[0]) / 2));
+        }
+        for (int i = 0; i < agents; i++)
+        {
+            for (int j = 0; j < agents; j++)
+            {
+                Connect4MatchResult result = results[i][j];
+                if (result != null)
+                {
+                    text.append(names.get(i) + " vs. " + names.get(j) + ": " + result + sprtText(result)
+                        + String.format("%n"));
+                }
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * Returns the factory for an agent, giving an agent added by class its search threads.
+     */
+    private Connect4AgentFactory factory(int agent)
+    {
+        Class<? extends Agent> type = types.get(agent);
+        if (type == null)
+        {
+            return factories.get(agent);
+        }
+        return Connect4MatchRunner.factoryFor(type, searchThreadCount > 0 ? searchThreadCount
+            : Connect4MatchRunner.searchThreadsFor(threadCount), lazySmp);
+    }
+
+    /**
+     * Plays the games of one pairing, batch by batch, until the SPRT decides it or it reaches
+     * the greatest number of games.
+     */
+    private void playPairing(int first, int second)
+    {
+        Connect4MatchRunner runner = new Connect4MatchRunner(factory(first), factory(second),
+            numCols, numRows);
+        runner.setWinLength(winLength);
+        runner.setThreadCount(threadCount);
+        runner.setClock(timeControl);
+        // whole sets of four games, so colors and first moves stay balanced
+        int batch = (threadCount + 3) / 4 * 4;
+        Connect4MatchResult total = results[first][second];
+        if (total == null)
+        {
+            total = new Connect4MatchResult();
+            results[first][second] = total;
+        }
+        int played = 0;
+        while (played < maxGames)
+        {
+            int games = Math.min(batch, maxGames - played);
+            total.addAll(runner.play(games));
+            played += games;
+            if (useSprt && sprt(total) != 0)
+            {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Pairs the agents for a round of a Swiss tournament, placed by their ratings so far, which
+     * unlike points do not depend on how many games each agent has played: the best placed
+     * agent with the next best it has not played, and so on down, going back to an earlier
+     * choice if that leaves two agents that have met. If the number of agents is odd, the lowest
+     * placed agent that has not sat out yet sits out this round.
+     * 
+     * Once there is no way to pair every agent with one it has not played, as when there are
+     * more rounds than opponents, each agent in turn plays the next best one it has not played
+     * if there is one, and the next best otherwise. A rematch adds up to the greatest number of
+     * games to the pairing's earlier ones.
+     */
+    private List<int[]> swissPairings(boolean[] satOut)
+    {
+        int agents = names.size();
+        final double[] ratings = getRatings();
+        List<Integer> waiting = new ArrayList<Integer>();
+        for (int i = 0; i < agents; i++)
+        {
+            waiting.add(i);
+        }
+        Collections.sort(waiting, new Comparator<Integer>()
+        {
+            public int compare(Integer a, Integer b)
+            {
+                return Double.compare(ratings[b], ratings[a]);
+            }
+        });
+        if (agents % 2 == 1)
+        {
+            int out = waiting.size() - 1;
+            while (out >= 0 && satOut[waiting.get(out)])
+            {
+                out--;
+            }
+            if (out < 0)
+            {
+                Arrays.fill(satOut, false);     // everyone has sat out once; start again
+                out = waiting.size() - 1;
+            }
+            satOut[waiting.get(out)] = true;
+            waiting.remove(out);
+        }
+
+        List<int[]> pairings = new ArrayList<int[]>();
+        if (pairNewOpponents(new ArrayList<Integer>(waiting), pairings))
+        {
+            return pairings;
+        }
+        while (waiting.size() > 1)
+        {
+            int first = waiting.remove(0);
+            int opponent = 0;
+            for (int k = 0; k < waiting.size(); k++)
+            {
+                if (!haveMet(first, waiting.get(k)))
+                {
+                    opponent = k;
+                    break;
+                }
+            }
+            int second = waiting.remove(opponent);
+            pairings.add(new int[] {Math.min(first, second), Math.max(first, second)});
+        }
+        return pairings;
+    }
+
+    /**
+     * Pairs the waiting agents, best placed first, so that no two of them have met before,
+     * trying the next best opponents when the best ones leave no such pairing.
+     * 
+     * @param waiting the agents to pair, best placed first; emptied if the pairing succeeds.
+     * @param pairings the list to add the pairings to.
+     * @return false if there is no such pairing, with waiting and pairings as they were.
+     */
+    private boolean pairNewOpponents(List<Integer> waiting, List<int[]> pairings)
+    {
+        if (waiting.size() < 2)
+        {
+            return true;
+        }
+        int first = waiting.remove(0);
+        for (int k = 0; k < waiting.size(); k++)
+        {
+            int second = waiting.get(k);
+            if (haveMet(first, second))
+            {
+                continue;
+            }
+            waiting.remove(k);
+            pairings.add(new int[] {Math.min(first, second), Math.max(first, second)});
+            if (pairNewOpponents(waiting, pairings))
+            {
+                return true;
+            }
+            pairings.remove(pairings.size() - 1);
+            waiting.add(k, second);
+        }
+        waiting.add(0, first);
+        return false;
+    }
+
+    /**
+     * Checks if two agents have played each other.
+     */
+    private boolean haveMet(int a, int b)
+    {
+        return results[Math.min(a, b)][Math.max(a, b)] != null;
+    }
+
+    /**
+     * Returns an agent's wins, losses and draws over all its games.
+     */
+    private int[] record(int agent)
+    {
+        int[] record = new int[3];
+        for (int other = 0; other < names.size(); other++)
+        {
+            Connect4MatchResult asFirst = results[agent][other];
+            if (asFirst != null)
+            {
+                record[0] += asFirst.getWins();
+                record[1] += asFirst.getLosses();
+                record[2] += asFirst.getDraws();
+            }
+            Connect4MatchResult asSecond = results[other][agent];
+            if (asSecond != null)
+            {
+                record[0] += asSecond.getLosses();
+                record[1] += asSecond.getWins();
+                record[2] += asSecond.getDraws();
+            }
+        }
+        return record;
+    }
+
+    /**
+     * Runs the SPRT on the games of a pairing.
+     */
+    private int sprt(Connect4MatchResult result)
+    {
+        return Connect4Elo.sprt(result.getWins(), result.getLosses(), result.getDraws(), elo0, elo1,
+            alpha, beta);
+    }
+
+    /**
+     * Describes the SPRT result and the Elo difference of a pairing.
+     */
+    private String sprtText(Connect4MatchResult result)
+    {
+        double[] interval = Connect4Elo.eloInterval(result.getWins(), result.getLosses(),
+            result.getDraws(), 1.96);
+        String text = String.format("; Elo %.1f [%.1f, %.1f]", Connect4Elo.elo(result.getWins(),
+            result.getLosses(), result.getDraws()), interval[0], interval[1]);
+        if (useSprt)
+        {
+            int decision = sprt(result);
+            text += decision > 0 ? "; SPRT: first is stronger"
+                : decision < 0 ? "; SPRT: first is not stronger" : "; SPRT: undecided";
+        }
+        return text;
+    }
+
+    /**
+     * Plays a tournament between agent classes and prints the standings.
+     * 
+     * @param args round-robin or swiss, the greatest number of games per pairing, and then the
+     *        agent classes.
+     * @throws ClassNotFoundException if an agent class cannot be found.
+     */
+    public static void main(String[] args) throws ClassNotFoundException
+    {
+        if (args.length < 4)
+        {
+            System.out.println("Usage: java Connect4Tournament round-robin|swiss "
+                + "max-games-per-pairing AgentClass AgentClass...");
+            return;
+        }
+        Format format = args[0].equalsIgnoreCase("swiss") ? Format.SWISS : Format.ROUND_ROBIN;
+        Connect4Tournament tournament = new Connect4Tournament();
+        tournament.setMaxGames(Integer.parseInt(args[1]));
+        for (int i = 2; i < args.length; i++)
+        {
+            tournament.addAgent(Class.forName(args[i]).asSubclass(Agent.class));
+        }
+        tournament.play(format);
+        System.out.print(tournament.getStandings());
+    }
+}
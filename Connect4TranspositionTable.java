@@ -0,0 +1,302 @@
+import java.nio.ByteBuffer;
+
+/**
+ * A fixed-size table of search results, keyed by the Zobrist hash of a position.
+ * 
+ * The same Connect 4 position can be reached through many different orders of moves. The table
+ * lets a search remember what it learned about a position the first time, so it does not have
+ * to search it again when it gets there another way.
+ * 
+ * Each entry holds the depth that was searched, the score, whether the score is exact or only a
+ * bound, and the best move found. The table is a power-of-two array of entries indexed by the low
+ * bits of the hash; when two positions land on the same entry the replacement policy decides
+ * which one to keep. The entries can be kept off the Java heap, so even a table of several
+ * gigabytes adds nothing to garbage collection work.
+ * 
+ * Several threads can share one table without locking. An entry is two words, and another
+ * thread may write between the two, so the key is stored XORed with the data word. A probe
+ * XORs them back and only accepts the entry if that gives the key it asked for; an entry torn
+ * by two writers fails the check and reads as empty.
+ */
+public class Connect4TranspositionTable
+{
+    /**
+     * The score is the exact score of the position.
+     */
+    public static final int EXACT = 0;
+    /**
+     * The score is a lower bound: the position scores at least this much.
+     */
+    public static final int LOWER_BOUND = 1;
+    /**
+     * The score is an upper bound: the position scores at most this much.
+     */
+    public static final int UPPER_BOUND = 2;
+
+    /**
+     * How to decide whether a new result overwrites the entry already in its place.
+     */
+    public enum ReplacementPolicy
+    {
+        /** Always keep the newest result. */
+        ALWAYS,
+        /** Keep the deeper result, unless the old one was stored by an earlier search. */
+        DEPTH_PREFERRED
+    }
+
+    // layout of an entry's data word: the score in bits 0-31, the depth in 32-39, the bound in
+    // 40-41, the move plus one in 42-57, and the generation in 58-62
+    private static final long VALID = 1L << 63;    // set in every stored entry, so 0 means empty
+    private static final int DEPTH_SHIFT = 32;
+    private static final int BOUND_SHIFT = 40;
+    private static final int MOVE_SHIFT = 42;
+    private static final int MOVE_MASK = 0xFFFF;
+    private static final int GENERATION_SHIFT = 58;
+    private static final int GENERATION_MASK = 0x1F;
+
+    private static final int ENTRY_BYTES = 16;      // a key XOR data word and a data word
+    private static final int SEGMENT_BYTES = 1 << 30;
+
+    private final long entryMask;
+    private final ReplacementPolicy policy;
+    private final long[] heapEntries;           // used when the table is on the heap
+    private final ByteBuffer[] directSegments;  // used when the table is off the heap
+    private final int entriesPerSegmentShift;
+    private int generation;
+
+    /**
+     * Creates an on-heap table with the depth-preferred replacement policy.
+     * 
+     * @param capacity the number of entries; rounded down to a power of two.
+     */
+    public Connect4TranspositionTable(long capacity)
+    {
+        this(capacity, ReplacementPolicy.DEPTH_PREFERRED, false);
+    }
+
+    /**
+     * Creates a table.
+     * 
+     * An off-heap table is allocated as direct buffers of up to a gigabyte each, so its size is
+     * limited by -XX:MaxDirectMemorySize instead of the heap size.
+     * 
+     * @param capacity the number of entries; rounded down to a power of two.
+     * @param policy how to choose between a new result and the entry already in its place.
+     * @param offHeap true to keep the entries in direct memory, false to keep them in a long[].
+     */
+    public Connect4TranspositionTable(long capacity, ReplacementPolicy policy, boolean offHeap)
+    {
+        if (capacity < 1)
+        {
+            throw new IllegalArgumentException("A transposition table needs at least one entry.");
+        }
+        capacity = Long.highestOneBit(capacity);
+        this.entryMask = capacity - 1;
+        this.policy = policy;
+        if (offHeap)
+        {
+            long bytes = capacity * ENTRY_BYTES;
+            int segmentBytes = (int) Math.min(bytes, SEGMENT_BYTES);
+            directSegments = new ByteBuffer[(int) (bytes / segmentBytes)];
+            for (int i = 0; i < directSegments.length; i++)
+            {
+                directSegments[i] = ByteBuffer.allocateDirect(segmentBytes);
+            }
+            entriesPerSegmentShift = Integer.numberOfTrailingZeros(segmentBytes / ENTRY_BYTES);
+            heapEntries = null;
+        }
+        else
+        {
+            if (capacity > 1L << 29)
+            {
+                throw new IllegalArgumentException("An on-heap table can hold at most 2^29 entries.");
+            }
+            heapEntries = new long[(int) capacity * 2];
+            directSegments = null;
+            entriesPerSegmentShift = 0;
+        }
+    }
+
+    /**
+     * Returns the number of entries in the table.
+     * 
+     * @return the capacity of the table.
+     */
+    public long getCapacity()
+    {
+        return entryMask + 1;
+    }
+
+    /**
+     * Marks the start of a new search. With the depth-preferred policy, entries stored by
+     * earlier searches are replaced even by shallower results.
+     */
+    public void newSearch()
+    {
+        generation = (generation + 1) & GENERATION_MASK;
+    }
+
+    /**
+     * Empties the table.
+     */
+    public void clear()
+    {
+        if (heapEntries != null)
+        {
+            java.util.Arrays.fill(heapEntries, 0L);
+        }
+        else
+        {
+            for (ByteBuffer segment : directSegments)
+            {
+                for (int i = 0; i < segment.capacity(); i += Long.BYTES)
+                {
+                    segment.putLong(i, 0L);
+                }
+            }
+        }
+    }
+
+    /**
+     * Looks up a position.
+     * 
+     * @param key the Zobrist hash of the position.
+     * @return the entry for the position, to be read with getScore() and the other entry
+     *         methods; 0 if the table holds nothing for the position.
+     */
+    public long probe(long key)
+    {
+        long index = key & entryMask;
+        long data = readData(index);
+        if ((readKey(index) ^ data) != key)
+        {
+            return 0L;     // empty, another position, or torn by a concurrent store
+        }
+        return data;
+    }
+
+    /**
+     * Stores the result of searching a position, subject to the replacement policy.
+     * 
+     * @param key the Zobrist hash of the position.
+     * @param depth the depth that was searched; depths over 255 are stored as 255.
+     * @param bound EXACT, LOWER_BOUND or UPPER_BOUND.
+     * @param score the score of the position.
+     * @param move the best move found, or -1 if there is none; columns over 65534 are stored as
+     *        no move.
+     */
+    public void store(long key, int depth, int bound, int score, int move)
+    {
+        long index = key & entryMask;
+        if (policy == ReplacementPolicy.DEPTH_PREFERRED)
+        {
+            long old = readData(index);
+            if (old != 0 && (readKey(index) ^ old) != key && getGeneration(old) == generation
+                && getDepth(old) > depth)
+            {
+                return;
+            }
+        }
+        int storedMove = move < MOVE_MASK ? move + 1 : 0;
+        long data = VALID
+            | (score & 0xFFFFFFFFL)
+            | ((long) Math.min(depth, 0xFF) << DEPTH_SHIFT)
+            | ((long) bound << BOUND_SHIFT)
+            | ((long) storedMove << MOVE_SHIFT)
+            | ((long) generation << GENERATION_SHIFT);
+        write(index, key ^ data, data);
+    }
+
+    /**
+     * Returns the score of an entry returned by probe().
+     * 
+     * @param entry the entry.
+     * @return the stored score.
+     */
+    public static int getScore(long entry)
+    {
+        return (int) entry;
+    }
+
+    /**
+     * Returns the searched depth of an entry returned by probe().
+     * 
+     * @param entry the entry.
+     * @return the stored depth.
+     */
+    public static int getDepth(long entry)
+    {
+        return (int) (entry >>> DEPTH_SHIFT) & 0xFF;
+    }
+
+    /**
+     * Returns the bound type of an entry returned by probe().
+     * 
+     * @param entry the entry.
+     * @return EXACT, LOWER_BOUND or UPPER_BOUND.
+     */
+    public static int getBound(long entry)
+    {
+        return (int) (entry >>> BOUND_SHIFT) & 0x3;
+    }
+
+    /**
+     * Returns the best move of an entry returned by probe().
+     * 
+     * @param entry the entry.
+     * @return the stored column, or -1 if there is none.
+     */
+    public static int getMove(long entry)
+    {
+        return (int) ((entry >>> MOVE_SHIFT) & MOVE_MASK) - 1;
+    }
+
+    private static int getGeneration(long entry)
+    {
+        return (int) (entry >>> GENERATION_SHIFT) & GENERATION_MASK;
+    }
+
+    private long readKey(long index)
+    {
+        if (heapEntries != null)
+        {
+            return heapEntries[(int) index * 2];
+        }
+        return segment(index).getLong(offset(index));
+    }
+
+    private long readData(long index)
+    {
+        if (heapEntries != null)
+        {
+            return heapEntries[(int) index * 2 + 1];
+        }
+        return segment(index).getLong(offset(index) + Long.BYTES);
+    }
+
+    private void write(long index, long key, long data)
+    {
+        if (heapEntries != null)
+        {
+            heapEntries[(int) index * 2] = key;
+            heapEntries[(int) index * 2 + 1] = data;
+        }
+        else
+        {
+            ByteBuffer segment = segment(index);
+            int offset = offset(index);
+            segment.putLong(offset, key);
+            segment.putLong(offset + Long.BYTES, data);
+        }
+    }
+
+    private ByteBuffer segment(long index)
+    {
+        return directSegments[(int) (index >>> entriesPerSegmentShift)];
+    }
+
+    private int offset(long index)
+    {
+        return (int) (index & ((1L << entriesPerSegmentShift) - 1)) * ENTRY_BYTES;
+    }
+}
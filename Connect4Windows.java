@@ -0,0 +1,393 @@
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An index of every window of a Connect 4 board: every line of four slots in a row, across, up
+ * or on a diagonal, that a player can win by filling. In a game with another win length, the
+ * windows are lines of that many slots.
+ * 
+ * The windows depend only on the size of the board and the win length, so they are worked out
+ * once for each and kept as bitboard masks, in the layout of Connect4Game.getSlotBit(). Each
+ * slot also has the list of the windows it lies on. Questions such as "can this player win right
+ * now?" or "which empty slots would complete a line?" then become a few mask tests instead of a
+ * scan over the board.
+ * 
+ * On a board that takes more than one bitboard word, a window across or on a diagonal may lie
+ * partly in one word and partly in the next. Each window is therefore kept as a list of
+ * segments: the slots of the window in one word, as the index of the word and a mask. On a
+ * board of one word every window is a single segment.
+ */
+public class Connect4Windows
+{
+    // directions of the windows, as steps in columns and rows: down, across, and both diagonals
+    private static final int[] DIRECTION_COLS = {0, 1, 1, 1};
+    private static final int[] DIRECTION_ROWS = {1, 0, 1, -1};
+
+    private static final ConcurrentHashMap<Long, Connect4Windows> INDEXES =
+        new ConcurrentHashMap<Long, Connect4Windows>();
+
+    private final int numCols;
+    private final int numRows;
+    private final int windowLength;
+    private final int[] windowSegments;         // per window, its first segment, then one past the last
+    private final int[] segmentWords;
+    private final long[] segmentMasks;
+    private final int[] slotWords;              // per slot, indexed by column * numRows + row
+    private final long[] slotBits;
+    private final int[][] windowsBySlot;        // per slot, the windows through it
+    private final long[] columnMasks;
+    private final long oddRowMask;
+
+    /**
+     * Returns the index for the size of a game's board and its win length. Indexes are shared
+     * between all games of the same size and win length.
+     * 
+     * @param game the game.
+     * @return the window index for boards of that size and win length.
+     */
+    public static Connect4Windows forGame(Connect4Game game)
+    {
+        int columns = game.getColumnCount();
+        int rows = game.getRowCount();
+        // rows fit in 6 bits and win lengths in 7, so the three make a unique key
+        Long size = ((long) columns << 32) | (game.getWinLength() << 6) | rows;
+        Connect4Windows index = INDEXES.get(size);
+        if (index == null)
+        {
+            index = new Connect4Windows(game);
+            Connect4Windows existing = INDEXES.putIfAbsent(size, index);
+            if (existing != null)
+            {
+                index = existing;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Builds the index for boards the size of the given game, with its win length.
+     */
+    private Connect4Windows(Connect4Game game)
+    {
+        numCols = game.getColumnCount();
+        numRows = game.getRowCount();
+        windowLength = game.getWinLength();
+        slotWords = new int[numCols * numRows];
+        slotBits = new long[numCols * numRows];
+        columnMasks = new long[numCols];
+        long oddRows = 0L;
+        for (int i = 0; i < numCols; i++)
+        {
+            for (int j = 0; j < numRows; j++)
+            {
+                slotWords[i * numRows + j] = game.getColumnWord(i);
+                slotBits[i * numRows + j] = game.getSlotBit(i, j);
+                columnMasks[i] |= slotBits[i * numRows + j];
+                if (((numRows - j) & 1) == 1)
+                {
+                    // the first word holds the most columns, and the other words the same rows
+                    oddRows |= slotBits[i * numRows + j];
+                }
+            }
+        }
+        oddRowMask = oddRows;
+
+        int[][] slotsOf = new int[numCols * numRows * DIRECTION_COLS.length][];
+        int[] counts = new int[slotBits.length];
+        int count = 0;
+        int segmentCount = 0;
+        for (int i = 0; i < numCols; i++)
+        {
+            for (int j = 0; j < numRows; j++)
+            {
+                for (int d = 0; d < DIRECTION_COLS.length; d++)
+                {
+                    int lastCol = i + (windowLength - 1) * DIRECTION_COLS[d];
+                    int lastRow = j + (windowLength - 1) * DIRECTION_ROWS[d];
+                    if (lastCol >= numCols || lastRow < 0 || lastRow >= numRows)
+                    {
+                        continue;
+                    }
+                    int[] slots = new int[windowLength];
+                    for (int k = 0; k < windowLength; k++)
+                    {
+                        slots[k] = (i + k * DIRECTION_COLS[d]) * numRows + j + k * DIRECTION_ROWS[d];
+                        counts[slots[k]]++;
+                        if (k == 0 || slotWords[slots[k]] != slotWords[slots[k - 1]])
+                        {
+                            segmentCount++;
+                        }
+                    }
+                    slotsOf[count++] = slots;
+                }
+            }
+        }
+
+        // the slots of a window go left to right, so the slots in each word come together
+        windowSegments = new int[count + 1];
+        segmentWords = new int[segmentCount];
+        segmentMasks = new long[segmentCount];
+        int segment = -1;
+        for (int w = 0; w < count; w++)
+        {
+            windowSegments[w] = segment + 1;
+            for (int k = 0; k < windowLength; k++)
+            {
+                int slot = slotsOf[w][k];
+                if (k == 0 || slotWords[slot] != segmentWords[segment])
+                {
+                    segment++;
+                    segmentWords[segment] = slotWords[slot];
+                }
+                segmentMasks[segment] |= slotBits[slot];
+            }
+        }
+        windowSegments[count] = segmentCount;
+
+        windowsBySlot = new int[slotBits.length][];
+        for (int s = 0; s < slotBits.length; s++)
+        {
+            windowsBySlot[s] = new int[counts[s]];
+            counts[s] = 0;
+        }
+        for (int w = 0; w < count; w++)
+        {
+            for (int slot : slotsOf[w])
+            {
+                windowsBySlot[slot][counts[slot]++] = w;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of columns of the boards the index is for.
+     * 
+     * @return the number of columns.
+     */
+    public int getColumnCount()
+    {
+        return numCols;
+    }
+
+    /**
+     * Returns the number of rows of the boards the index is for.
+     * 
+     * @return the number of rows.
+     */
+    public int getRowCount()
+    {
+        return numRows;
+    }
+
+    /**
+     * Returns the number of slots in each window: the win length of the games the index is for.
+     * 
+     * @return the length of a window.
+     */
+    public int getWindowLength()
+    {
+        return windowLength;
+    }
+
+    /**
+     * Returns the bitboard mask of a column, in the word Connect4Game.getColumnWord() gives.
+     * 
+     * @param column the column.
+     * @return the mask with every slot of the column set.
+     */
+    public long getColumnMask(int column)
+    {
+        return columnMasks[column];
+    }
+
+    /**
+     * Returns the bitboard mask of the odd rows, counting the bottom row as row 1. Every word of
+     * a bitboard holds the same rows, so the mask applies to each of them.
+     * 
+     * @return the mask with every slot of rows 1, 3, 5 and so on from the bottom set.
+     */
+    public long getOddRowMask()
+    {
+        return oddRowMask;
+    }
+
+    /**
+     * Returns the number of windows on the board.
+     * 
+     * @return the number of windows.
+     */
+    public int getWindowCount()
+    {
+        return windowSegments.length - 1;
+    }
+
+    /**
+     * Returns the bitboard mask of a window. On a board of more than one word this is only the
+     * window's first segment; see getSegmentStart().
+     * 
+     * @param i the index of the window, from 0 to getWindowCount() - 1.
+     * @return the mask with the slots of the window set.
+     */
+    public long getWindow(int i)
+    {
+        return segmentMasks[windowSegments[i]];
+    }
+
+    /**
+     * Returns the first segment of a window. The segments of window i run from
+     * getSegmentStart(i) up to getSegmentStart(i + 1) - 1, so getSegmentStart(getWindowCount())
+     * is the number of segments. On a board of one word, segment i is window i.
+     * 
+     * @param i the index of the window, from 0 to getWindowCount().
+     * @return the index of the window's first segment.
+     */
+    public int getSegmentStart(int i)
+    {
+        return windowSegments[i];
+    }
+
+    /**
+     * Returns the bitboard word a segment lies in.
+     * 
+     * @param segment the index of the segment.
+     * @return the index of the word.
+     */
+    public int getSegmentWord(int segment)
+    {
+        return segmentWords[segment];
+    }
+
+    /**
+     * Returns the bitboard mask of a segment, in its word.
+     * 
+     * @param segment the index of the segment.
+     * @return the mask with the slots of the window in the segment's word set.
+     */
+    public long getSegmentMask(int segment)
+    {
+        return segmentMasks[segment];
+    }
+
+    /**
+     * Returns the windows that a slot lies on.
+     * 
+     * @param column the column of the slot.
+     * @param row the row of the slot, 0 being the top row.
+     * @return the indexes of the windows through the slot. The array is shared; do not change it.
+     */
+    public int[] getWindowsThrough(int column, int row)
+    {
+        return windowsBySlot[column * numRows + row];
+    }
+
+    /**
+     * Returns the empty slots that would complete a line for a player: every empty slot on a
+     * window whose other slots all hold the player's tokens. The slots need not be playable
+     * yet. On a board of more than one word, this is only the first word; see
+     * getThreats(Connect4Game, boolean, int).
+     * 
+     * @param game the position, which must be the size this index was built for.
+     * @param red true for the red player's threats, false for yellow's.
+     * @return a bitboard of the threatened slots.
+     */
+    public long getThreats(Connect4Game game, boolean red)
+    {
+        return getThreats(game, red, 0);
+    }
+
+    /**
+     * Returns the empty slots in one bitboard word that would complete a line for a player.
+     * 
+     * @param game the position, which must be the size this index was built for.
+     * @param red true for the red player's threats, false for yellow's.
+     * @param word the index of the word, from 0 to the game's getWordCount() - 1.
+     * @return the word of the bitboard of the threatened slots.
+     */
+    public long getThreats(Connect4Game game, boolean red, int word)
+    {
+        long empty = ~game.getFilledBits(word);
+        long threats = 0L;
+        int count = getWindowCount();
+        for (int i = 0; i < count; i++)
+        {
+            // exactly one slot of the window is not the player's, and it is empty
+            long missing = 0L;
+            int missingWord = -1;
+            for (int s = windowSegments[i]; s < windowSegments[i + 1]; s++)
+            {
+                long own = red ? game.getRedBits(segmentWords[s]) : game.getYellowBits(segmentWords[s]);
+                long notOwn = segmentMasks[s] & ~own;
+                if (notOwn != 0)
+                {
+                    if (missing != 0 || (notOwn & (notOwn - 1)) != 0)
+                    {
+                        missing = 0L;
+                        break;
+                    }
+                    missing = notOwn;
+                    missingWord = segmentWords[s];
+                }
+            }
+            if (missingWord == word && (missing & empty) != 0)
+            {
+                threats |= missing;
+            }
+        }
+        return threats;
+    }
+
+    /**
+     * Returns a column the player could play in to win at once.
+     * 
+     * Only the slots a token can be dropped into are looked at, and for each only the windows
+     * through it.
+     * 
+     * @param game the position, which must be the size this index was built for.
+     * @param red true to look for a winning move for red, false for yellow.
+     * @return the leftmost winning column; -1 if there is none.
+     */
+    public int getWinningColumn(Connect4Game game, boolean red)
+    {
+        // on a board of one word, window w is segment w, and the player's tokens are one long
+        boolean oneWord = game.getWordCount() == 1;
+        long own = red ? game.getRedBits() : game.getYellowBits();
+        for (int i = 0; i < numCols; i++)
+        {
+            int row = numRows - 1 - game.getHeight(i);
+            if (row < 0)
+            {
+                continue;
+            }
+            int slot = i * numRows + row;
+            long withMove = own | slotBits[slot];
+            for (int w : windowsBySlot[slot])
+            {
+                if (oneWord ? (withMove & segmentMasks[w]) == segmentMasks[w] : completes(game, red, w, slot))
+                {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Checks if a window would hold only the player's tokens once a token is added to a slot.
+     */
+    private boolean completes(Connect4Game game, boolean red, int window, int slot)
+    {
+        for (int s = windowSegments[window]; s < windowSegments[window + 1]; s++)
+        {
+            int word = segmentWords[s];
+            long own = red ? game.getRedBits(word) : game.getYellowBits(word);
+            if (word == slotWords[slot])
+            {
+                own |= slotBits[slot];
+            }
+            if ((own & segmentMasks[s]) != segmentMasks[s])
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+}
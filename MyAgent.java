@@ -1,27 +1,73 @@
+import java.io.File;
+import java.io.IOException;
 import java.util.Random;
 
 public class MyAgent extends Agent
 {
     Random r;
+    Connect4Search search;
+    long timeLimitMillis;
+    Connect4OpeningBook book;
+    Connect4Ponderer ponderer;
+    boolean ponderAllReplies;
+    Connect4SearchMetrics lastMetrics;  // of the search that chose our last move
+    boolean verbose;
 
-    private static final int BLANK = 0;
     private static final int RED = 1;
     private static final int YELLOW = 2;
 
-    private static final int MINVAL = -1;
-    private static final int MAXVAL = 1;
-    private static final int MAXDEPTH = 5;
+    private static final int MAXDEPTH = 42;
+    private static final long MOVE_TIME_MILLIS = 500;
+    private static final long CLOCK_MARGIN_MILLIS = 20;
+    private static final String BOOK_FILE = "connect4.book";
+    private static final int DEFAULT_THREAD_COUNT = 1;
 
     /**
      * Constructs a new agent, giving it the game and telling it whether it is Red or Yellow.
+     * The agent searches on a single thread; give it more with the constructor that takes a
+     * thread count.
      * 
      * @param game The game the agent will be playing.
      * @param iAmRed True if the agent is Red, False if the agent is Yellow.
      */
     public MyAgent(Connect4Game game, boolean iAmRed)
+    {
+        this(game, iAmRed, DEFAULT_THREAD_COUNT);
+    }
+
+    /**
+     * Constructs a new agent that searches on the given number of threads, splitting the root
+     * moves between them.
+     * 
+     * @param game The game the agent will be playing.
+     * @param iAmRed True if the agent is Red, False if the agent is Yellow.
+     * @param threadCount The number of threads to search with, at least 1.
+     */
+    public MyAgent(Connect4Game game, boolean iAmRed, int threadCount)
+    {
+        this(game, iAmRed, threadCount, false);
+    }
+
+    /**
+     * Constructs a new agent that searches on the given number of threads, either splitting the
+     * root moves between them, or with Lazy SMP: every thread searching the whole position, and
+     * sharing what it finds through the transposition table. Lazy SMP keeps all the threads busy
+     * near the end of the game, when there are few root moves left to split.
+     * 
+     * @param game The game the agent will be playing.
+     * @param iAmRed True if the agent is Red, False if the agent is Yellow.
+     * @param threadCount The number of threads to search with, at least 1.
+     * @param lazySmp True to search with Lazy SMP, False to split the root moves.
+     */
+    public MyAgent(Connect4Game game, boolean iAmRed, int threadCount, boolean lazySmp)
     {
         super(game, iAmRed);
         r = new Random();
+        search = lazySmp ? new Connect4LazySmpSearch(threadCount)
+            : new Connect4ParallelSearch(threadCount);
+        search.setMonitor(Connect4SearchMonitor.getPlatformMonitor());
+        timeLimitMillis = MOVE_TIME_MILLIS;
+        book = loadBook(new File(BOOK_FILE));
     }
 
     /**
@@ -46,60 +92,106 @@ public class MyAgent extends Agent
 
     /*
      * Strategy:
-     * If we can win, move on that column.
-     * If the opponent can win, block that column.
-     * Otherwise, move randomly.
+     * Play the opening book's move while the game is still in the book.
+     * After that, search deeper and deeper with alpha-beta pruning, up to MAXDEPTH moves
+     * ahead, until the time limit runs out. The root moves are shared out
+     * between the agent's threads, or with Lazy SMP each thread searches the
+     * whole position. Play the move with the best
+     * score: the quickest forced win, otherwise the slowest loss or the best
+     * position we can be sure of.
+     * Every search's metrics go to the platform monitor, where JMX clients
+     * can watch them, and are printed only when verbose.
+     * Under a clock, never search longer than the clock allows.
+     * When pondering, stop the ponderer as soon as it is our turn. If it
+     * already proved a win or loss for this position, play its move at
+     * once; otherwise search, starting from the table it filled. After
+     * moving, ponder the opponent's reply.
      */
     public void move() {
-        int[] move = evaluateMove(new Connect4Game(myGame), 0);
-        System.out.println("Move: " + move[0] + " Score: " + move[1]);
-        moveOnColumn(move[0]);
+        if (ponderer != null)
+            ponderer.stop();
+        long entry = book == null ? 0 : book.probe(myGame);
+        if (entry != 0) {
+            int column = Connect4OpeningBook.getMove(entry);
+            if (verbose)
+                System.out.println(getName() + ": move " + column + " score "
+                                   + Connect4OpeningBook.getScore(entry) + " (book)");
+            moveOnColumn(column);
+            return;
+        }
+        Connect4SearchMetrics pondered = ponderer == null ? null : ponderer.getResult(myGame);
+        Connect4SearchMetrics metrics;
+        if (pondered != null && Connect4Search.isDecisive(pondered.getScore())) {
+            metrics = pondered;
+            if (verbose)
+                System.out.println(getName() + ": " + metrics + " (pondered)");
+        } else {
+            search.search(new Connect4Game(myGame), MAXDEPTH, moveTime());
+            metrics = search.getLastMetrics();
+            if (verbose)
+                System.out.println(getName() + ": " + metrics);
+        }
+        lastMetrics = metrics;
+        moveOnColumn(metrics.getColumn());
+        ponder(metrics);
     }
 
     /*
-     * @returns [int]: Integer corresponding to the follow of the slot, as
-     *                 defined in the class constants.
+     * Starts pondering the position after our move, unless the game is
+     * over or the move was cancelled: the opponent's reply our search
+     * predicted or, if it predicted none or we ponder them all, every reply.
+     * @param metrics [Connect4SearchMetrics]: The metrics of the search
+     *                                         that chose our move.
      */
-    private int getSlotValue(Connect4Slot slot) {
-        if (slot.getIsFilled()) {
-            if (slot.getIsRed())
-                return RED;
-            return YELLOW;
-        }
-        return BLANK;
-    }
-
-    private Connect4Slot getSlotAt(Connect4Game game, int colIdx, int slotIdx) {
-        return game.getColumn(colIdx).getSlot(slotIdx);
+    private void ponder(Connect4SearchMetrics metrics) {
+        if (ponderer == null || Thread.currentThread().isInterrupted())
+            return;
+        Connect4Game after = new Connect4Game(myGame);
+        if (after.gameWonByLastMove() != 'N' || after.boardFull())
+            return;
+        int[] line = metrics.getPrincipalVariation();
+        int predicted = ponderAllReplies || line.length < 2 ? -1 : line[1];
+        ponderer.start(after, predicted);
     }
 
-    private boolean isValidMove(Connect4Game game, int colIdx, int slotIdx) {
-        return getLowestEmptyIndex(game.getColumn(colIdx)) == slotIdx;
+    /*
+     * Maps the opening book written by Connect4BookGenerator, if there is
+     * one.
+     * @returns [Connect4OpeningBook]: The book, or null if the file is
+     *                                 missing or cannot be read.
+     */
+    private static Connect4OpeningBook loadBook(File file) {
+        if (!file.isFile())
+            return null;
+        try {
+            return new Connect4OpeningBook(file);
+        } catch (IOException e) {
+            System.out.println("Not using the opening book: " + e.getMessage());
+            return null;
+        }
     }
 
     /*
-     * @returns [int]: The index of the slot (0 for s1, 1 for s2, etc.) where
-     *                 the winning move is made, or -1 if there is no winning
-     *                 move.
+     * Returns how long to search this move: the time limit, cut down to fit
+     * the clock. The game time left is shared evenly between the moves we
+     * may still have to make, and a margin is kept so the move gets back to
+     * the game driver before the clock runs out.
+     * @returns [long]: The search time in milliseconds, at least 1.
      */
-    private int oneAway(Connect4Slot s1, Connect4Slot s2, Connect4Slot s3,
-                        Connect4Slot s4, int color) {
-        int colorCount = 0;
-        int blankCount = 0;
-        int blankIdx = -1;
-        Connect4Slot[] slots = {s1, s2, s3, s4};
-        for (int i = 0; i < slots.length; i++) {
-            Connect4Slot slot = slots[i];
-            if (getSlotValue(slot) == color)
-                colorCount += 1;
-            else if (getSlotValue(slot) == BLANK) {
-                blankIdx = i;
-                blankCount += 1;
-            }
+    private long moveTime() {
+        long time = timeLimitMillis;
+        long gameLeft = getRemainingGameMillis();
+        if (gameLeft != Connect4Clock.UNLIMITED) {
+            int emptySlots = myGame.getColumnCount() * myGame.getRowCount()
+                             - myGame.getMoveCount();
+            int movesLeft = Math.max((emptySlots + 1) / 2, 1);
+            time = Math.min(time, gameLeft / movesLeft + myClock.getIncrementMillis());
+        }
+        long moveLeft = getRemainingMoveMillis();
+        if (moveLeft != Connect4Clock.UNLIMITED) {
+            time = Math.min(time, moveLeft - moveLeft / 10 - CLOCK_MARGIN_MILLIS);
         }
-        if (colorCount == 3 && blankCount == 1)
-            return blankIdx;
-        return -1;
+        return Math.max(time, 1);
     }
 
     private int winningColumn(int color) {
@@ -108,153 +200,13 @@ public class MyAgent extends Agent
 
     /*
      * Returns the winning column index for the @color player or -1 if that
-     * player can't win.
+     * player can't win. Only the windows through the slots that can be
+     * played next are checked.
      * @param color [int]: The color of the player, as defined by the class
      *                     constants (1 for RED, 2 for YELLOW).
      */
     private int winningColumn(Connect4Game game, int color) {
-        for (int i = 0; i < game.getColumnCount(); i++) {
-            for (int j = 0; j < game.getRowCount(); j++) {
-                // Vertical
-                if (j + 3 < game.getRowCount()) {
-                    if (isValidMove(game, i, j) || isValidMove(game, i, j+1) ||
-                        isValidMove(game, i, j+2) || isValidMove(game, i, j+3)) {
-                        int winningIdx = oneAway(getSlotAt(game, i, j),
-                                                 getSlotAt(game, i, j+1),
-                                                 getSlotAt(game, i, j+2),
-                                                 getSlotAt(game, i, j+3),
-                                                 color);
-                        if (winningIdx > -1) {
-                            return i;
-                        }
-                    }
-                }
-                // Horizontal
-                if (i + 3 < game.getColumnCount()) {
-                    if (isValidMove(game, i, j) || isValidMove(game, i+1, j) ||
-                        isValidMove(game, i+2, j) || isValidMove(game, i+3, j)) {
-                        int winningIdx = oneAway(getSlotAt(game, i, j),
-                                                 getSlotAt(game, i+1, j),
-                                                 getSlotAt(game, i+2, j),
-                                                 getSlotAt(game, i+3, j),
-                                                 color);
-                        if (winningIdx > -1) {
-                            return i + winningIdx;
-                        }
-                    }
-                }
-                // Diagonals
-                if (i + 3 < game.getColumnCount()
-                    && j + 3 < game.getRowCount()) {
-                    if (isValidMove(game, i, j) || isValidMove(game, i+1, j+1) ||
-                        isValidMove(game, i+2, j+2) || isValidMove(game, i+3, j+3)) {
-                        int winningIdx = oneAway(getSlotAt(game, i, j),
-                                                 getSlotAt(game, i+1, j+1),
-                                                 getSlotAt(game, i+2, j+2),
-                                                 getSlotAt(game, i+3, j+3),
-                                                 color);
-                        if (winningIdx > -1) {
-                            return i + winningIdx;
-                        }
-                    }
-                }
-                if (i > 2 && j + 3 < game.getRowCount()) {
-                    if (isValidMove(game, i, j) || isValidMove(game, i-1, j+1) ||
-                        isValidMove(game, i-2, j+2) || isValidMove(game, i-3, j+3)) {
-                        int winningIdx = oneAway(getSlotAt(game, i, j),
-                                                 getSlotAt(game, i-1, j+1),
-                                                 getSlotAt(game, i-2, j+2),
-                                                 getSlotAt(game, i-3, j+3),
-                                                 color);
-                        if (winningIdx > -1) {
-                            return i - winningIdx;
-                        }
-                    }
-                }
-            }
-        }
-        return -1;
-    }
-
-    private void moveOnColumn(Connect4Game game, int colIdx, int color) {
-        int lowestEmptySlotIndex = getLowestEmptyIndex(game.getColumn(colIdx));
-        if (lowestEmptySlotIndex > -1) {
-            Connect4Slot lowestEmptySlot = game.getColumn(colIdx).getSlot(lowestEmptySlotIndex);
-            if (color == RED)
-                lowestEmptySlot.addRed();
-            else
-                lowestEmptySlot.addYellow();
-        }
-    }
-
-    private Connect4Game makeMove(Connect4Game game, int colIdx, int color) {
-        Connect4Game newGame = new Connect4Game(game);
-        moveOnColumn(newGame, colIdx, color);
-        return newGame;
-    }
-
-    /*
-     * @returns [array]: [int column, int score]
-     */
-    private int[] evaluateMove(Connect4Game game, int depth) {
-        int myColor = iAmRed ? RED : YELLOW;
-        int oppColor = iAmRed ? YELLOW : RED;
-        int[] move = { -1, 0 };
-
-        if (depth >= MAXDEPTH) {
-            move[0] = randomMove();
-            return move;
-        }
-        // My move
-        else if (depth % 2 == 0) {
-            int colIdx = winningColumn(game, myColor);
-            if (colIdx > -1) {
-                move[0] = colIdx;
-                move[1] = 1;
-                return move;
-            }
-            else {
-                move[1] = MINVAL;
-                for (int i = 0; i < game.getColumnCount(); i++) {
-                    if (!game.getColumn(i).getIsFull()) {
-                        int[] score = evaluateMove(makeMove(game, i, myColor),
-                                                   depth + 1);
-                        if (score[1] >= move[1]) {
-                            move[0] = i;
-                            move[1] = score[1];
-                            if (move[1] == MAXVAL)
-                                break;
-                        }
-                    }
-                }
-                return move;
-            }
-        }
-        // Opponent's move
-        else {
-            int colIdx = winningColumn(game, oppColor);
-            if (colIdx > -1) {
-                move[0] = colIdx;
-                move[1] = -1;
-                return move;
-            }
-            else {
-                move[1] = MAXVAL;
-                for (int i = 0; i < game.getColumnCount(); i++) {
-                    if (!game.getColumn(i).getIsFull()) {
-                        int[] score = evaluateMove(makeMove(game, i, oppColor),
-                                                   depth + 1);
-                        if (score[1] <= move[1]) {
-                            move[0] = i;
-                            move[1] = score[1];
-                            if (move[1] == MINVAL)
-                                break;
-                        }
-                    }
-                }
-                return move;
-            }
-        }
+        return Connect4Windows.forGame(game).getWinningColumn(game, color == RED);
     }
 
     /**
@@ -288,15 +240,7 @@ public class MyAgent extends Agent
      * @return the index of the top empty slot in a particular column; -1 if the column is already full.
      */
     public int getLowestEmptyIndex(Connect4Column column) {
-        int lowestEmptySlot = -1;
-        for  (int i = 0; i < column.getRowCount(); i++)
-        {
-            if (!column.getSlot(i).getIsFilled())
-            {
-                lowestEmptySlot = i;
-            }
-        }
-        return lowestEmptySlot;
+        return column.getNextOpenRow();
     }
 
     /**
@@ -322,11 +266,11 @@ public class MyAgent extends Agent
      * it can go ahead and make that move. Implement this method to return what column would
      * allow the agent to win.
      *
-     * @return the column that would allow the agent to win.
+     * @return the column that would allow the agent to win; -1 if there is none.
      */
     public int iCanWin()
     {
-        return 0;
+        return winningColumn(iAmRed ? RED : YELLOW);
     }
 
     /**
@@ -336,11 +280,97 @@ public class MyAgent extends Agent
      * available so your agent can block them. Implement this method to return what column should
      * be blocked to prevent the opponent from winning.
      *
-     * @return the column that would allow the opponent to win.
+     * @return the column that would allow the opponent to win; -1 if there is none.
      */
     public int theyCanWin()
     {
-        return 0;
+        return winningColumn(iAmRed ? YELLOW : RED);
+    }
+
+    /**
+     * Sets how long the agent may think about each move. The agent always finishes looking one
+     * move ahead, so a move can take longer on very large boards.
+     * 
+     * @param timeLimitMillis the time limit per move, in milliseconds.
+     */
+    public void setTimeLimit(long timeLimitMillis)
+    {
+        this.timeLimitMillis = timeLimitMillis;
+    }
+
+    /**
+     * Turns printing each move's metrics on or off. The agent is quiet by default; its metrics
+     * are always kept for getLastMetrics() and the platform Connect4SearchMonitor.
+     * 
+     * @param verbose true to print a line to System.out for every move.
+     */
+    public void setVerbose(boolean verbose)
+    {
+        this.verbose = verbose;
+    }
+
+    /**
+     * Turns pondering on or off. A pondering agent goes on searching with its own search on a
+     * background thread while the opponent thinks, and keeps what it finds in its tables. The
+     * background search competes with the opponent for the processors.
+     * 
+     * @param pondering true to ponder.
+     * @param allReplies true to ponder every reply of the opponent, false to ponder only the
+     *        reply the agent's search predicted.
+     */
+    public void setPondering(boolean pondering, boolean allReplies)
+    {
+        if (ponderer != null)
+        {
+            ponderer.stop();
+        }
+        ponderer = pondering ? new Connect4Ponderer(search) : null;
+        ponderAllReplies = allReplies;
+    }
+
+    /**
+     * Stops pondering, since there is no reply of the opponent's left to think about.
+     */
+    public void gameOver()
+    {
+        if (ponderer != null)
+        {
+            ponderer.stop();
+        }
+    }
+
+    /**
+     * Stops pondering and shuts down the search's threads. The agent cannot move afterwards.
+     */
+    public void close()
+    {
+        if (ponderer != null)
+        {
+            ponderer.stop();
+        }
+        search.shutdown();
+    }
+
+    /**
+     * Returns the metrics of the search that chose the agent's last move, which may have been
+     * a pondered one.
+     * 
+     * @return the metrics, or null if the agent has not searched yet.
+     */
+    public Connect4SearchMetrics getLastMetrics()
+    {
+        return lastMetrics;
+    }
+
+    /**
+     * Returns the evaluator the agent's search scores positions with, so its weights can be
+     * set for this agent.
+     * 
+     * @return the evaluator.
+     */
+    public Connect4Evaluator getEvaluator()
+    {
+        return search.getEvaluator();
     }
 
     /**